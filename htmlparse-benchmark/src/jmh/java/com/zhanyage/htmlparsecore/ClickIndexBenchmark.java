@@ -0,0 +1,101 @@
+package com.zhanyage.htmlparsecore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * 点击时查找可点击 span 的耗时和链接个数的关系。
+ * <p>
+ * 文本按每行固定的字符数排版，链接均匀分布，有一部分跨行。{@link LineRangeIndex} 是 ClickableSpanIndex 使用的索引；
+ * linearScan 和 SpannedString、SpannableString 的 getSpans(offset, offset) 一样遍历所有的 span，
+ * 是建立索引之前每次点击的查找方式。每次操作查找 {@link #TAPS} 个随机的点击位置
+ */
+@State(Scope.Benchmark)
+public class ClickIndexBenchmark {
+    private static final int TAPS = 1024;
+    private static final int CHARS_PER_LINE = 40;
+    private static final int LINK_DISTANCE = 60;
+    private static final int LINK_LENGTH = 12;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int linkCount;
+
+    private int lineCount;
+    private int[] starts;
+    private int[] ends;
+    private int[] firstLines;
+    private int[] lastLines;
+    private LineRangeIndex index;
+    private final int[] tapOffsets = new int[TAPS];
+    private final int[] tapLines = new int[TAPS];
+
+    @Setup
+    public void setUp() {
+        int length = linkCount * LINK_DISTANCE;
+        lineCount = length / CHARS_PER_LINE + 1;
+        starts = new int[linkCount];
+        ends = new int[linkCount];
+        firstLines = new int[linkCount];
+        lastLines = new int[linkCount];
+        for (int i = 0; i < linkCount; i++) {
+            starts[i] = i * LINK_DISTANCE + 5;
+            ends[i] = starts[i] + LINK_LENGTH;
+            // 和 ClickableSpanIndex 一致，从行首开始的区间也属于上一行的行尾
+            int first = starts[i] / CHARS_PER_LINE;
+            if (first > 0 && starts[i] % CHARS_PER_LINE == 0) {
+                first--;
+            }
+            firstLines[i] = first;
+            lastLines[i] = ends[i] / CHARS_PER_LINE;
+        }
+        index = buildIndex();
+
+        Random random = new Random(42);
+        for (int i = 0; i < TAPS; i++) {
+            tapOffsets[i] = random.nextInt(length);
+            tapLines[i] = tapOffsets[i] / CHARS_PER_LINE;
+        }
+    }
+
+    /**
+     * 建立索引，文本或者 layout 变化后第一次点击时执行
+     */
+    @Benchmark
+    public LineRangeIndex buildIndex() {
+        return new LineRangeIndex(lineCount, starts, ends, firstLines, lastLines);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TAPS)
+    public int indexed() {
+        int found = 0;
+        for (int i = 0; i < TAPS; i++) {
+            found += index.find(tapLines[i], tapOffsets[i]);
+        }
+        return found;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TAPS)
+    public int linearScan() {
+        int found = 0;
+        for (int i = 0; i < TAPS; i++) {
+            int offset = tapOffsets[i];
+            int match = -1;
+            for (int j = 0; j < linkCount; j++) {
+                if (starts[j] <= offset && ends[j] >= offset) {
+                    match = j;
+                    break;
+                }
+            }
+            found += match;
+        }
+        return found;
+    }
+}
@@ -0,0 +1,81 @@
+package com.zhanyage.htmlparsecore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * 颜色和 style 属性的解析，输入是编辑器生成的 html 中常见的写法，也包括无法解析的值
+ */
+@State(Scope.Benchmark)
+public class ColorBenchmark {
+
+    private final String[] cssColors = {
+            "rgb(51, 51, 51)", "#333333", "rgba(0, 0, 0, 0.85)", "#ff6600", "rgb(255,102,0)",
+            "#1A73E8", "red", "transparent", "#fff", "rgb(51, 51,", "inherit", "#80ff0000",
+            "hsl(210, 50%, 40%)", "darkslategray", "#12345",
+    };
+
+    private final String[] fontColors = {
+            "#ff0000", "red", "#333333", "blue", "#80ff0000", "#fff", "unknown", null,
+    };
+
+    private final String[] styles = {
+            "color: rgb(51, 51, 51); font-size: 14px",
+            "color:#999999",
+            "font-size: 12px; color: rgba(0, 0, 0, 0.85); text-align: center",
+            "text-align:center",
+            "margin: 0px; padding: 0px; line-height: 1.5",
+            "font-weight: bold; text-decoration: underline; background-color: #ffff00",
+            "font-size: 10.5pt; color: #333333",
+            "font-size: 1.2em",
+    };
+
+    /**
+     * 重复的颜色命中缓存
+     */
+    @Benchmark
+    public void cssColor(Blackhole bh) {
+        for (String color : cssColors) {
+            bh.consume(HtmlColors.parseCssColor(color));
+        }
+    }
+
+    /**
+     * 不经过缓存，每次都扫描颜色值
+     */
+    @Benchmark
+    public void cssColorUncached(Blackhole bh) {
+        for (String color : cssColors) {
+            bh.consume(HtmlColors.parseCssColorUncached(color));
+        }
+    }
+
+    @Benchmark
+    public void fontColor(Blackhole bh) {
+        for (String color : fontColors) {
+            bh.consume(HtmlColors.parseFontColor(color));
+        }
+    }
+
+    /**
+     * 重复的 style 命中缓存
+     */
+    @Benchmark
+    public void inlineStyle(Blackhole bh) {
+        for (String style : styles) {
+            bh.consume(InlineStyle.parse(style));
+        }
+    }
+
+    /**
+     * 不经过缓存，每次都扫描所有的声明
+     */
+    @Benchmark
+    public void inlineStyleUncached(Blackhole bh) {
+        for (String style : styles) {
+            bh.consume(InlineStyle.parseDeclarations(style));
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.zhanyage.htmlparsecore;
+
+import org.ccil.cowan.tagsoup.HTMLSchema;
+import org.ccil.cowan.tagsoup.Parser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.xml.sax.InputSource;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+
+/**
+ * 预解析格式的解码和在客户端解析 html 的对照，每次操作处理语料中的所有文档。
+ * <p>
+ * Html.fromHtml 依赖 Android 的文本类，不能在 JVM 上运行，这里用它内置的 TagSoup 只做词法分析、
+ * 不生成 span 的耗时作为它的下限
+ */
+@State(Scope.Benchmark)
+public class CompiledBenchmark {
+    private static final HTMLSchema SCHEMA = new HTMLSchema();
+
+    @Param({Corpus.CHAT, Corpus.FAQ, Corpus.EDITOR, Corpus.ARTICLE})
+    public String corpus;
+
+    private String[] documents;
+    private byte[][] compiled;
+
+    @Setup
+    public void setUp() {
+        documents = Corpus.documents(corpus);
+        compiled = new byte[documents.length][];
+        for (int i = 0; i < documents.length; i++) {
+            compiled[i] = CompiledDocument.compile(documents[i]);
+        }
+    }
+
+    /**
+     * 客户端解码预解析的文档
+     */
+    @Benchmark
+    public void decode(Blackhole bh) {
+        for (byte[] data : compiled) {
+            bh.consume(CompiledDocument.decode(ByteBuffer.wrap(data)));
+        }
+    }
+
+    /**
+     * 服务端编码，包含解析 html
+     */
+    @Benchmark
+    public void compile(Blackhole bh) {
+        for (String document : documents) {
+            bh.consume(CompiledDocument.compile(document));
+        }
+    }
+
+    /**
+     * 客户端用 htmlparse-core 解析 html
+     */
+    @Benchmark
+    public void parse(Blackhole bh) {
+        for (String document : documents) {
+            bh.consume(HtmlParser.parse(document));
+        }
+    }
+
+    /**
+     * 和 Html.fromHtml 一样重写标签后交给 TagSoup，事件不做任何处理
+     */
+    @Benchmark
+    public void tagSoup(Blackhole bh) throws Exception {
+        DefaultHandler handler = new DefaultHandler();
+        for (String document : documents) {
+            Parser parser = new Parser();
+            parser.setProperty(Parser.schemaProperty, SCHEMA);
+            parser.setContentHandler(handler);
+            parser.parse(new InputSource(new StringReader(HtmlTagRewriter.rewrite(document))));
+            bh.consume(parser);
+        }
+    }
+}
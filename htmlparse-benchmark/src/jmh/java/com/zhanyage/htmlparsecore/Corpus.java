@@ -0,0 +1,107 @@
+package com.zhanyage.htmlparsecore;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基准测试的输入，来自 resources/corpus 中签入的文件：
+ * <ul>
+ * <li>chat：一屏的短聊天消息，每条之间用单独一行的 ---- 分隔</li>
+ * <li>faq、editor：中等长度的富文本答案，editor 是编辑器生成的大量重复 style</li>
+ * <li>article：几十 KB 的长文</li>
+ * <li>nesting：深层嵌套、未闭合标签、大量实体等极端输入</li>
+ * </ul>
+ */
+final class Corpus {
+    static final String CHAT = "chat";
+    static final String FAQ = "faq";
+    static final String EDITOR = "editor";
+    static final String ARTICLE = "article";
+    static final String NESTING = "nesting";
+
+    private static final String CHAT_SEPARATOR = "\n----\n";
+
+    private Corpus() {
+    }
+
+    /**
+     * @param name {@link #CHAT} 等语料的名称
+     * @return 一次操作需要处理的所有文档
+     */
+    static String[] documents(String name) {
+        switch (name) {
+            case CHAT:
+                String chat = load("chat.txt");
+                List<String> messages = new ArrayList<>();
+                int start = 0;
+                for (int i = chat.indexOf(CHAT_SEPARATOR); i >= 0; i = chat.indexOf(CHAT_SEPARATOR, start)) {
+                    messages.add(chat.substring(start, i));
+                    start = i + CHAT_SEPARATOR.length();
+                }
+                messages.add(chat.substring(start).trim());
+                return messages.toArray(new String[messages.size()]);
+            case FAQ:
+                return new String[]{load("answer-faq.html")};
+            case EDITOR:
+                return new String[]{load("answer-editor.html")};
+            case ARTICLE:
+                return new String[]{load("article.html")};
+            case NESTING:
+                return new String[]{load("nesting.html")};
+            default:
+                throw new IllegalArgumentException("unknown corpus " + name);
+        }
+    }
+
+    /**
+     * 把文档重复 copies 次，用来测量耗时和文档大小的关系
+     */
+    static String repeat(String document, int copies) {
+        StringBuilder sb = new StringBuilder(document.length() * copies);
+        for (int i = 0; i < copies; i++) {
+            sb.append(document);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return depth 层嵌套的 span、b、i，最内层是一段文字
+     */
+    static String nested(int depth) {
+        StringBuilder sb = new StringBuilder(depth * 40);
+        for (int i = 0; i < depth; i++) {
+            sb.append(i % 3 == 0 ? "<span style=\"color:#333333\">" : (i % 3 == 1 ? "<b>" : "<i>"));
+        }
+        sb.append("text");
+        for (int i = depth - 1; i >= 0; i--) {
+            sb.append(i % 3 == 0 ? "</span>" : (i % 3 == 1 ? "</b>" : "</i>"));
+        }
+        return sb.toString();
+    }
+
+    private static String load(String file) {
+        InputStream in = Corpus.class.getResourceAsStream("/corpus/" + file);
+        if (in == null) {
+            throw new IllegalStateException("missing corpus file " + file);
+        }
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+            return out.toString("UTF-8");
+        } catch (IOException e) {
+            throw new IllegalStateException("read corpus file " + file + " failed", e);
+        } finally {
+            try {
+                in.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
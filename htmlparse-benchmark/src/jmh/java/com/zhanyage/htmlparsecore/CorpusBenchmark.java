@@ -0,0 +1,65 @@
+package com.zhanyage.htmlparsecore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * 解析流程中每个阶段在各类语料上的耗时，每次操作处理语料中的所有文档
+ */
+@State(Scope.Benchmark)
+public class CorpusBenchmark {
+
+    @Param({Corpus.CHAT, Corpus.FAQ, Corpus.EDITOR, Corpus.ARTICLE, Corpus.NESTING})
+    public String corpus;
+
+    private String[] documents;
+
+    @Setup
+    public void setUp() {
+        documents = Corpus.documents(corpus);
+    }
+
+    /**
+     * 当前的单次扫描标签重写
+     */
+    @Benchmark
+    public void overrideTags(Blackhole bh) {
+        for (String document : documents) {
+            bh.consume(HtmlTagRewriter.rewrite(document));
+        }
+    }
+
+    /**
+     * 原来的正则加 String.replace 链，作为对照
+     */
+    @Benchmark
+    public void overrideTagsLegacy(Blackhole bh) {
+        for (String document : documents) {
+            bh.consume(LegacyTagRewriter.overrideTags(document));
+        }
+    }
+
+    /**
+     * 标签处理：解析成 {@link HtmlDocument}
+     */
+    @Benchmark
+    public void parse(Blackhole bh) {
+        for (String document : documents) {
+            bh.consume(HtmlParser.parse(document));
+        }
+    }
+
+    /**
+     * 图片占位大小的正则扫描
+     */
+    @Benchmark
+    public void imageSizes(Blackhole bh) {
+        for (String document : documents) {
+            bh.consume(HtmlImageSizes.scan(document));
+        }
+    }
+}
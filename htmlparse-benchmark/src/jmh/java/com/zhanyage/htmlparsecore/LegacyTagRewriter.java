@@ -0,0 +1,60 @@
+package com.zhanyage.htmlparsecore;
+
+/**
+ * 原来 HtmlTagHandler.overrideTags 的实现：一次正则替换加上二十多次 String.replace，
+ * 只用来和 {@link HtmlTagRewriter} 对比
+ */
+final class LegacyTagRewriter {
+    private static final String IMGLABEL = "HTML_IMG_LABEL";
+    private static final String BRLABEL = "HTML_BR_LABEL";
+
+    private LegacyTagRewriter() {
+    }
+
+    static String overrideTags(String html) {
+        if (html == null) {
+            return null;
+        }
+
+        // Remove useless div tags
+        html = html.replaceAll("<div>(<img\\s+[^>]*>)</div>", "$1");
+
+        // Wrap HTML tags to prevent parsing custom tags error
+        html = "<html>" + html + "</html>";
+
+        html = html.replace("<ul", "<" + HtmlTagRewriter.UNORDERED_LIST);
+        html = html.replace("</ul>", "</" + HtmlTagRewriter.UNORDERED_LIST + ">");
+        html = html.replace("<ol", "<" + HtmlTagRewriter.ORDERED_LIST);
+        html = html.replace("</ol>", "</" + HtmlTagRewriter.ORDERED_LIST + ">");
+        html = html.replace("<li", "<" + HtmlTagRewriter.LIST_ITEM);
+        html = html.replace("</li>", "</" + HtmlTagRewriter.LIST_ITEM + ">");
+        html = html.replace("<font", "<" + HtmlTagRewriter.FONT);
+        html = html.replace("</font>", "</" + HtmlTagRewriter.FONT + ">");
+        html = html.replace("<div", "<" + HtmlTagRewriter.DIV);
+        html = html.replace("</div>", "</" + HtmlTagRewriter.DIV + ">");
+        html = html.replace("<span", "<" + HtmlTagRewriter.SPAN);
+        html = html.replace("</span>", "</" + HtmlTagRewriter.SPAN + ">");
+
+        html = html.replace("<br", "<" + BRLABEL);
+        html = html.replace("<b", "<" + HtmlTagRewriter.BSTYLE);
+        html = html.replace("<" + BRLABEL, "<br");
+
+        html = html.replace("</b>", "</" + HtmlTagRewriter.BSTYLE + ">");
+        html = html.replace("<p", "<" + HtmlTagRewriter.PSTYLE);
+        html = html.replace("</p>", "</" + HtmlTagRewriter.PSTYLE + ">");
+        html = html.replace("<a", "<" + HtmlTagRewriter.ASTYLE);
+        html = html.replace("</a>", "</" + HtmlTagRewriter.ASTYLE + ">");
+        html = html.replace("<u", "<" + HtmlTagRewriter.USTYLE);
+        html = html.replace("</u>", "</" + HtmlTagRewriter.USTYLE + ">");
+
+        html = html.replace("<img", "<" + IMGLABEL);
+        html = html.replace("<i", "<" + HtmlTagRewriter.ISTYLE);
+        html = html.replace("<" + IMGLABEL, "<img");
+        html = html.replace("<video", "<" + HtmlTagRewriter.VIDEOlABEL);
+
+        html = html.replace("</i>", "</" + HtmlTagRewriter.ISTYLE + ">");
+        html = html.replace("\n", "<br>");
+
+        return html;
+    }
+}
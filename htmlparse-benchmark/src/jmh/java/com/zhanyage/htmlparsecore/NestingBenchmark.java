@@ -0,0 +1,32 @@
+package com.zhanyage.htmlparsecore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * htmlparse-core 解析的耗时和标签嵌套深度的关系，结束标签从栈顶取出开始位置，耗时应该随深度线性增长。
+ * <p>
+ * 只测量 {@link HtmlParser}。注册自定义标签时的 TagSoup + HtmlTagHandler 需要 Android 的 Editable，
+ * 不能在这个模块中运行，它的 MarkStack 随嵌套深度的耗时没有在这里测量
+ */
+@State(Scope.Benchmark)
+public class NestingBenchmark {
+
+    @Param({"10", "100", "1000"})
+    public int depth;
+
+    private String document;
+
+    @Setup
+    public void setUp() {
+        document = Corpus.nested(depth);
+    }
+
+    @Benchmark
+    public HtmlDocument parse() {
+        return HtmlParser.parse(document);
+    }
+}
@@ -0,0 +1,41 @@
+package com.zhanyage.htmlparsecore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * htmlparse-core 各阶段的耗时和文档大小的关系：把 faq 答案重复 copies 次，每个阶段的耗时应该随大小线性增长。
+ * <p>
+ * 不包括生成 span：HtmlTagHandler 和 SpanAdapter 依赖 Android 的 SpannableStringBuilder，不能在这个模块中运行
+ */
+@State(Scope.Benchmark)
+public class ScalingBenchmark {
+
+    @Param({"1", "4", "16", "64"})
+    public int copies;
+
+    private String document;
+
+    @Setup
+    public void setUp() {
+        document = Corpus.repeat(Corpus.documents(Corpus.FAQ)[0], copies);
+    }
+
+    @Benchmark
+    public String overrideTags() {
+        return HtmlTagRewriter.rewrite(document);
+    }
+
+    @Benchmark
+    public HtmlDocument parse() {
+        return HtmlParser.parse(document);
+    }
+
+    @Benchmark
+    public int[] imageSizes() {
+        return HtmlImageSizes.scan(document);
+    }
+}
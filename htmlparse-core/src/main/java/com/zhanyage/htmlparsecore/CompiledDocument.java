@@ -0,0 +1,185 @@
+package com.zhanyage.htmlparsecore;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link HtmlDocument} 的二进制格式，服务端预先解析 html，客户端直接解码，不需要再做任何词法分析。
+ * <p>
+ * 格式（版本 1），所有数值都是大端序：
+ * <pre>
+ * int32    magic，固定为 0x48545044（"HTPD"）
+ * uint16   版本号，目前为 {@link #VERSION}
+ * uint16   标志位，目前必须为 0
+ * int32    文本长度 textLength（UTF-16 码元个数）
+ * int32    字符串个数 stringCount
+ * int32    区间个数 runCount
+ * char16[textLength]   文本，UTF-16BE
+ * stringCount 个字符串，每个为 int32 长度加上对应个数的 UTF-16BE 码元，相同的字符串只存一次
+ * runCount 个区间，每个 7 个 int32：type、start、end、value、extra、string、secondString，
+ *          后两个是字符串表中的下标，没有时为 -1
+ * </pre>
+ * 区间字段的含义见 {@link StyleRun}。增加新的区间类型不改变版本号，解码后不认识的类型会被忽略；
+ * 布局发生变化时增加版本号，旧的解码器会拒绝新版本的数据
+ */
+public final class CompiledDocument {
+    public static final int MAGIC = 0x48545044;
+    public static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 4 + 2 + 2 + 4 + 4 + 4;
+    private static final int RUN_FIELD_COUNT = HtmlDocument.FIELD_COUNT + 2;
+
+    private CompiledDocument() {
+    }
+
+    /**
+     * 解析 html 并编码，等同于 {@code encode(HtmlParser.parse(html))}
+     */
+    public static byte[] compile(String html) {
+        return encode(HtmlParser.parse(html));
+    }
+
+    public static byte[] encode(HtmlDocument document) {
+        final int runCount = document.getRunCount();
+        Map<String, Integer> indexes = new HashMap<>();
+        String[] table = new String[runCount * 2];
+        int stringCount = 0;
+        int stringChars = 0;
+        int[] stringIndexes = new int[runCount * 2];
+        for (int i = 0; i < runCount * 2; i++) {
+            String s = (i & 1) == 0 ? document.getRunString(i >> 1) : document.getRunSecondString(i >> 1);
+            if (s == null) {
+                stringIndexes[i] = -1;
+                continue;
+            }
+            Integer index = indexes.get(s);
+            if (index == null) {
+                index = stringCount;
+                indexes.put(s, index);
+                table[stringCount++] = s;
+                stringChars += s.length();
+            }
+            stringIndexes[i] = index;
+        }
+
+        String text = document.getText();
+        int size = HEADER_SIZE + text.length() * 2 + stringCount * 4 + stringChars * 2
+                + runCount * RUN_FIELD_COUNT * 4;
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.putInt(MAGIC);
+        buffer.putShort((short) VERSION);
+        buffer.putShort((short) 0);
+        buffer.putInt(text.length());
+        buffer.putInt(stringCount);
+        buffer.putInt(runCount);
+        putChars(buffer, text);
+        for (int i = 0; i < stringCount; i++) {
+            buffer.putInt(table[i].length());
+            putChars(buffer, table[i]);
+        }
+        for (int i = 0; i < runCount; i++) {
+            buffer.putInt(document.getRunType(i));
+            buffer.putInt(document.getRunStart(i));
+            buffer.putInt(document.getRunEnd(i));
+            buffer.putInt(document.getRunValue(i));
+            buffer.putInt(document.getRunExtra(i));
+            buffer.putInt(stringIndexes[i * 2]);
+            buffer.putInt(stringIndexes[i * 2 + 1]);
+        }
+        return buffer.array();
+    }
+
+    public static HtmlDocument decode(byte[] data) {
+        return decode(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * 从 buffer 当前的 position 开始解码，不会修改 buffer 的 position 和字节序
+     *
+     * @throws IllegalArgumentException 数据不完整、版本不支持或者区间越界
+     */
+    public static HtmlDocument decode(ByteBuffer data) {
+        ByteBuffer buffer = data.duplicate().order(ByteOrder.BIG_ENDIAN);
+        require(buffer, HEADER_SIZE);
+        if (buffer.getInt() != MAGIC) {
+            throw new IllegalArgumentException("not a compiled html document");
+        }
+        int version = buffer.getShort() & 0xFFFF;
+        int flags = buffer.getShort() & 0xFFFF;
+        if (version != VERSION || flags != 0) {
+            throw new IllegalArgumentException("unsupported version " + version + ", flags " + flags);
+        }
+        int textLength = buffer.getInt();
+        int stringCount = buffer.getInt();
+        int runCount = buffer.getInt();
+        if (textLength < 0 || stringCount < 0 || runCount < 0) {
+            throw new IllegalArgumentException("negative length in header");
+        }
+
+        String text = getChars(buffer, textLength);
+        // 每个字符串至少有 4 字节的长度，先检查数据是否足够，防止损坏的头部导致分配过大的数组
+        require(buffer, (long) stringCount * 4);
+        String[] table = new String[stringCount];
+        for (int i = 0; i < stringCount; i++) {
+            require(buffer, 4);
+            int length = buffer.getInt();
+            if (length < 0) {
+                throw new IllegalArgumentException("negative string length");
+            }
+            table[i] = getChars(buffer, length);
+        }
+
+        require(buffer, (long) runCount * RUN_FIELD_COUNT * 4);
+        int[] raw = new int[runCount * RUN_FIELD_COUNT];
+        IntBuffer ints = buffer.asIntBuffer();
+        ints.get(raw);
+
+        int[] runs = new int[runCount * HtmlDocument.FIELD_COUNT];
+        String[] strings = new String[runCount * 2];
+        for (int i = 0; i < runCount; i++) {
+            int offset = i * RUN_FIELD_COUNT;
+            int start = raw[offset + 1];
+            int end = raw[offset + 2];
+            if (start < 0 || end < start || end > textLength) {
+                throw new IllegalArgumentException("run [" + start + ", " + end
+                        + ") is out of text length " + textLength);
+            }
+            System.arraycopy(raw, offset, runs, i * HtmlDocument.FIELD_COUNT, HtmlDocument.FIELD_COUNT);
+            strings[i * 2] = getString(table, raw[offset + 5]);
+            strings[i * 2 + 1] = getString(table, raw[offset + 6]);
+        }
+        return new HtmlDocument(text, runCount, runs, strings, 0);
+    }
+
+    private static void putChars(ByteBuffer buffer, String s) {
+        buffer.asCharBuffer().put(s);
+        buffer.position(buffer.position() + s.length() * 2);
+    }
+
+    private static String getChars(ByteBuffer buffer, int length) {
+        require(buffer, (long) length * 2);
+        char[] chars = new char[length];
+        buffer.asCharBuffer().get(chars);
+        buffer.position(buffer.position() + length * 2);
+        return new String(chars);
+    }
+
+    private static String getString(String[] table, int index) {
+        if (index == -1) {
+            return null;
+        }
+        if (index < 0 || index >= table.length) {
+            throw new IllegalArgumentException("string index " + index + " is out of " + table.length);
+        }
+        return table[index];
+    }
+
+    private static void require(ByteBuffer buffer, long bytes) {
+        if (buffer.remaining() < bytes) {
+            throw new IllegalArgumentException("truncated compiled html document");
+        }
+    }
+}
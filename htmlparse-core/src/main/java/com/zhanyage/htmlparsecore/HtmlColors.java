@@ -0,0 +1,551 @@
+package com.zhanyage.htmlparsecore;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * html 中颜色值的解析，只扫描字符，不使用正则，也不会抛出异常。
+ * <p>
+ * 文档中反复出现的颜色值按字符串缓存，重复的颜色只需要一次查找，无法解析的值也会被缓存。
+ * 缓存不加锁，可以在任意线程调用
+ */
+public final class HtmlColors {
+    /**
+     * 无法解析的颜色
+     */
+    public static final long NONE = -1L;
+
+    /**
+     * 每种解析的缓存槽位个数，必须是 2 的幂
+     */
+    private static final int MEMO_SIZE = 128;
+
+    /**
+     * CSS 的颜色名称
+     */
+    private static final Map<String, Integer> sCssColors = new HashMap<>();
+    /**
+     * 和 android.graphics.Color#parseColor 支持的颜色名称一致，部分颜色的值和 CSS 不同
+     */
+    private static final Map<String, Integer> sFontColors = new HashMap<>();
+
+    private static final Memo sCssMemo = new Memo();
+    private static final Memo sFontMemo = new Memo();
+
+    static {
+        css("aliceblue", 0xFFF0F8FF);
+        css("antiquewhite", 0xFFFAEBD7);
+        css("aqua", 0xFF00FFFF);
+        css("aquamarine", 0xFF7FFFD4);
+        css("azure", 0xFFF0FFFF);
+        css("beige", 0xFFF5F5DC);
+        css("bisque", 0xFFFFE4C4);
+        css("black", 0xFF000000);
+        css("blanchedalmond", 0xFFFFEBCD);
+        css("blue", 0xFF0000FF);
+        css("blueviolet", 0xFF8A2BE2);
+        css("brown", 0xFFA52A2A);
+        css("burlywood", 0xFFDEB887);
+        css("cadetblue", 0xFF5F9EA0);
+        css("chartreuse", 0xFF7FFF00);
+        css("chocolate", 0xFFD2691E);
+        css("coral", 0xFFFF7F50);
+        css("cornflowerblue", 0xFF6495ED);
+        css("cornsilk", 0xFFFFF8DC);
+        css("crimson", 0xFFDC143C);
+        css("cyan", 0xFF00FFFF);
+        css("darkblue", 0xFF00008B);
+        css("darkcyan", 0xFF008B8B);
+        css("darkgoldenrod", 0xFFB8860B);
+        css("darkgray", 0xFFA9A9A9);
+        css("darkgreen", 0xFF006400);
+        css("darkgrey", 0xFFA9A9A9);
+        css("darkkhaki", 0xFFBDB76B);
+        css("darkmagenta", 0xFF8B008B);
+        css("darkolivegreen", 0xFF556B2F);
+        css("darkorange", 0xFFFF8C00);
+        css("darkorchid", 0xFF9932CC);
+        css("darkred", 0xFF8B0000);
+        css("darksalmon", 0xFFE9967A);
+        css("darkseagreen", 0xFF8FBC8F);
+        css("darkslateblue", 0xFF483D8B);
+        css("darkslategray", 0xFF2F4F4F);
+        css("darkslategrey", 0xFF2F4F4F);
+        css("darkturquoise", 0xFF00CED1);
+        css("darkviolet", 0xFF9400D3);
+        css("deeppink", 0xFFFF1493);
+        css("deepskyblue", 0xFF00BFFF);
+        css("dimgray", 0xFF696969);
+        css("dimgrey", 0xFF696969);
+        css("dodgerblue", 0xFF1E90FF);
+        css("firebrick", 0xFFB22222);
+        css("floralwhite", 0xFFFFFAF0);
+        css("forestgreen", 0xFF228B22);
+        css("fuchsia", 0xFFFF00FF);
+        css("gainsboro", 0xFFDCDCDC);
+        css("ghostwhite", 0xFFF8F8FF);
+        css("gold", 0xFFFFD700);
+        css("goldenrod", 0xFFDAA520);
+        css("gray", 0xFF808080);
+        css("green", 0xFF008000);
+        css("greenyellow", 0xFFADFF2F);
+        css("grey", 0xFF808080);
+        css("honeydew", 0xFFF0FFF0);
+        css("hotpink", 0xFFFF69B4);
+        css("indianred", 0xFFCD5C5C);
+        css("indigo", 0xFF4B0082);
+        css("ivory", 0xFFFFFFF0);
+        css("khaki", 0xFFF0E68C);
+        css("lavender", 0xFFE6E6FA);
+        css("lavenderblush", 0xFFFFF0F5);
+        css("lawngreen", 0xFF7CFC00);
+        css("lemonchiffon", 0xFFFFFACD);
+        css("lightblue", 0xFFADD8E6);
+        css("lightcoral", 0xFFF08080);
+        css("lightcyan", 0xFFE0FFFF);
+        css("lightgoldenrodyellow", 0xFFFAFAD2);
+        css("lightgray", 0xFFD3D3D3);
+        css("lightgreen", 0xFF90EE90);
+        css("lightgrey", 0xFFD3D3D3);
+        css("lightpink", 0xFFFFB6C1);
+        css("lightsalmon", 0xFFFFA07A);
+        css("lightseagreen", 0xFF20B2AA);
+        css("lightskyblue", 0xFF87CEFA);
+        css("lightslategray", 0xFF778899);
+        css("lightslategrey", 0xFF778899);
+        css("lightsteelblue", 0xFFB0C4DE);
+        css("lightyellow", 0xFFFFFFE0);
+        css("lime", 0xFF00FF00);
+        css("limegreen", 0xFF32CD32);
+        css("linen", 0xFFFAF0E6);
+        css("magenta", 0xFFFF00FF);
+        css("maroon", 0xFF800000);
+        css("mediumaquamarine", 0xFF66CDAA);
+        css("mediumblue", 0xFF0000CD);
+        css("mediumorchid", 0xFFBA55D3);
+        css("mediumpurple", 0xFF9370DB);
+        css("mediumseagreen", 0xFF3CB371);
+        css("mediumslateblue", 0xFF7B68EE);
+        css("mediumspringgreen", 0xFF00FA9A);
+        css("mediumturquoise", 0xFF48D1CC);
+        css("mediumvioletred", 0xFFC71585);
+        css("midnightblue", 0xFF191970);
+        css("mintcream", 0xFFF5FFFA);
+        css("mistyrose", 0xFFFFE4E1);
+        css("moccasin", 0xFFFFE4B5);
+        css("navajowhite", 0xFFFFDEAD);
+        css("navy", 0xFF000080);
+        css("oldlace", 0xFFFDF5E6);
+        css("olive", 0xFF808000);
+        css("olivedrab", 0xFF6B8E23);
+        css("orange", 0xFFFFA500);
+        css("orangered", 0xFFFF4500);
+        css("orchid", 0xFFDA70D6);
+        css("palegoldenrod", 0xFFEEE8AA);
+        css("palegreen", 0xFF98FB98);
+        css("paleturquoise", 0xFFAFEEEE);
+        css("palevioletred", 0xFFDB7093);
+        css("papayawhip", 0xFFFFEFD5);
+        css("peachpuff", 0xFFFFDAB9);
+        css("peru", 0xFFCD853F);
+        css("pink", 0xFFFFC0CB);
+        css("plum", 0xFFDDA0DD);
+        css("powderblue", 0xFFB0E0E6);
+        css("purple", 0xFF800080);
+        css("rebeccapurple", 0xFF663399);
+        css("red", 0xFFFF0000);
+        css("rosybrown", 0xFFBC8F8F);
+        css("royalblue", 0xFF4169E1);
+        css("saddlebrown", 0xFF8B4513);
+        css("salmon", 0xFFFA8072);
+        css("sandybrown", 0xFFF4A460);
+        css("seagreen", 0xFF2E8B57);
+        css("seashell", 0xFFFFF5EE);
+        css("sienna", 0xFFA0522D);
+        css("silver", 0xFFC0C0C0);
+        css("skyblue", 0xFF87CEEB);
+        css("slateblue", 0xFF6A5ACD);
+        css("slategray", 0xFF708090);
+        css("slategrey", 0xFF708090);
+        css("snow", 0xFFFFFAFA);
+        css("springgreen", 0xFF00FF7F);
+        css("steelblue", 0xFF4682B4);
+        css("tan", 0xFFD2B48C);
+        css("teal", 0xFF008080);
+        css("thistle", 0xFFD8BFD8);
+        css("tomato", 0xFFFF6347);
+        css("turquoise", 0xFF40E0D0);
+        css("violet", 0xFFEE82EE);
+        css("wheat", 0xFFF5DEB3);
+        css("white", 0xFFFFFFFF);
+        css("whitesmoke", 0xFFF5F5F5);
+        css("yellow", 0xFFFFFF00);
+        css("yellowgreen", 0xFF9ACD32);
+        css("transparent", 0x00000000);
+
+        font("black", 0xFF000000);
+        font("darkgray", 0xFF444444);
+        font("gray", 0xFF888888);
+        font("lightgray", 0xFFCCCCCC);
+        font("white", 0xFFFFFFFF);
+        font("red", 0xFFFF0000);
+        font("green", 0xFF00FF00);
+        font("blue", 0xFF0000FF);
+        font("yellow", 0xFFFFFF00);
+        font("cyan", 0xFF00FFFF);
+        font("magenta", 0xFFFF00FF);
+        font("aqua", 0xFF00FFFF);
+        font("fuchsia", 0xFFFF00FF);
+        font("darkgrey", 0xFF444444);
+        font("grey", 0xFF888888);
+        font("lightgrey", 0xFFCCCCCC);
+        font("lime", 0xFF00FF00);
+        font("maroon", 0xFF800000);
+        font("navy", 0xFF000080);
+        font("olive", 0xFF808000);
+        font("purple", 0xFF800080);
+        font("silver", 0xFFC0C0C0);
+        font("teal", 0xFF008080);
+    }
+
+    private static void css(String name, int color) {
+        sCssColors.put(name, color);
+    }
+
+    private static void font(String name, int color) {
+        sFontColors.put(name, color);
+    }
+
+    private HtmlColors() {
+    }
+
+    /**
+     * 解析 font 标签的 color 属性：#rrggbb、#aarrggbb 或颜色名称，和 android.graphics.Color#parseColor 一致
+     *
+     * @return ARGB 颜色值，无法解析时返回 {@link #NONE}
+     */
+    public static long parseFontColor(String value) {
+        if (value == null) {
+            return NONE;
+        }
+        long color = sFontMemo.get(value);
+        if (color == Memo.MISSING) {
+            color = parseFontColorUncached(value);
+            sFontMemo.put(value, color);
+        }
+        return color;
+    }
+
+    /**
+     * 解析 CSS 颜色：#rgb、#rrggbb、#aarrggbb、rgb()、rgba()、hsl()、hsla() 和 CSS 的颜色名称。
+     * 函数的参数可以是数值或者百分比，可以用逗号分隔，也可以用空格分隔并用 '/' 分隔透明度，
+     * 例如 rgb(255 0 0 / 50%)。不支持 #rgba、hwb()、lab() 等其他 CSS Color 4 的写法
+     *
+     * @return ARGB 颜色值，无法解析时（例如 inherit）返回 {@link #NONE}
+     */
+    public static long parseCssColor(String value) {
+        if (value == null) {
+            return NONE;
+        }
+        long color = sCssMemo.get(value);
+        if (color == Memo.MISSING) {
+            color = parseCssColorUncached(value);
+            sCssMemo.put(value, color);
+        }
+        return color;
+    }
+
+    static long parseFontColorUncached(String value) {
+        if (value.length() > 0 && value.charAt(0) == '#') {
+            int digits = value.length() - 1;
+            return digits == 6 || digits == 8 ? parseHex(value, 1, value.length()) : NONE;
+        }
+        return lookup(sFontColors, value);
+    }
+
+    static long parseCssColorUncached(String value) {
+        int length = value.length();
+        int i = skipWhitespace(value, 0, length);
+        while (length > i && Character.isWhitespace(value.charAt(length - 1))) {
+            length--;
+        }
+        if (i == length) {
+            return NONE;
+        }
+        if (value.charAt(i) == '#') {
+            return parseHex(value, i + 1, length);
+        }
+        int paren = value.indexOf('(', i);
+        if (paren < 0) {
+            return lookup(sCssColors, i == 0 && length == value.length() ? value : value.substring(i, length));
+        }
+        int nameEnd = paren;
+        while (nameEnd > i && Character.isWhitespace(value.charAt(nameEnd - 1))) {
+            nameEnd--;
+        }
+        if (isName(value, i, nameEnd, "rgb") || isName(value, i, nameEnd, "rgba")) {
+            return parseFunction(value, paren + 1, length, false);
+        } else if (isName(value, i, nameEnd, "hsl") || isName(value, i, nameEnd, "hsla")) {
+            return parseFunction(value, paren + 1, length, true);
+        }
+        return NONE;
+    }
+
+    private static long lookup(Map<String, Integer> colors, String name) {
+        Integer color = colors.get(name);
+        if (color == null) {
+            color = colors.get(name.toLowerCase(Locale.ROOT));
+        }
+        return color == null ? NONE : color & 0xFFFFFFFFL;
+    }
+
+    private static boolean isName(String value, int start, int end, String name) {
+        return end - start == name.length() && value.regionMatches(true, start, name, 0, name.length());
+    }
+
+    /**
+     * 解析 '#' 之后的 3、6 或 8 位十六进制数字
+     */
+    private static long parseHex(String value, int from, int to) {
+        int digits = to - from;
+        if (digits != 3 && digits != 6 && digits != 8) {
+            return NONE;
+        }
+        long color = 0;
+        for (int i = from; i < to; i++) {
+            int digit = Character.digit(value.charAt(i), 16);
+            if (digit < 0) {
+                return NONE;
+            }
+            color = (color << 4) | digit;
+            if (digits == 3) {
+                // #rgb 中的每一位重复一次
+                color = (color << 4) | digit;
+            }
+        }
+        if (digits != 8) {
+            color |= 0xFF000000L;
+        }
+        return color;
+    }
+
+    /**
+     * 解析 rgb()、rgba()、hsl()、hsla() 括号中的 3 个或 4 个参数，最后一个参数为透明度。
+     * 参数全部用逗号分隔，或者全部用空格分隔、透明度前面用 '/'，两种写法不能混用
+     *
+     * @param from '(' 之后的位置
+     */
+    private static long parseFunction(String value, int from, int to, boolean hsl) {
+        // 参数最多 4 个，直接放在局部变量中，不需要每次分配数组
+        float first = 0;
+        float second = 0;
+        float third = 0;
+        float alpha = 1;
+        // 第 n 位表示第 n 个参数是百分比
+        int percents = 0;
+        int count = 0;
+        // 由第一个分隔符决定：',' 为逗号分隔，' ' 为空格分隔
+        char separator = 0;
+        boolean slash = false;
+        int i = from;
+        while (true) {
+            i = skipWhitespace(value, i, to);
+            boolean negative = i < to && value.charAt(i) == '-';
+            if (i < to && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+                i++;
+            }
+            int start = i;
+            while (i < to && (isDigit(value.charAt(i)) || value.charAt(i) == '.')) {
+                i++;
+            }
+            float n = parseFloat(value, start, i);
+            if (Float.isNaN(n) || count == 4) {
+                return NONE;
+            }
+            if (i < to && value.charAt(i) == '%') {
+                percents |= 1 << count;
+                i++;
+            } else if (hsl && count == 0 && value.regionMatches(true, i, "deg", 0, 3)) {
+                i += 3;
+            }
+            if (negative) {
+                n = -n;
+            }
+            switch (count++) {
+                case 0:
+                    first = n;
+                    break;
+                case 1:
+                    second = n;
+                    break;
+                case 2:
+                    third = n;
+                    break;
+                default:
+                    alpha = n;
+                    break;
+            }
+            int numberEnd = i;
+            i = skipWhitespace(value, i, to);
+            if (i >= to) {
+                // 和原来的正则一致，缺少右括号时也可以解析
+                break;
+            }
+            char c = value.charAt(i);
+            if (c == ')') {
+                i++;
+                break;
+            }
+            if (c == ',' && separator != ' ') {
+                separator = ',';
+                i++;
+            } else if (c == '/' && separator != ',' && count == 3) {
+                separator = ' ';
+                slash = true;
+                i++;
+            } else if (i > numberEnd && separator != ',' && count < 3) {
+                separator = ' ';
+            } else {
+                return NONE;
+            }
+        }
+        if (count < 3 || (slash && count != 4) || skipWhitespace(value, i, to) != to) {
+            return NONE;
+        }
+
+        int a = 255;
+        if (count == 4) {
+            a = (int) (clamp((percents & 1 << 3) != 0 ? alpha / 100 : alpha, 0, 1) * 255);
+        }
+        int rgb;
+        if (hsl) {
+            rgb = hslToRgb(first, clamp(second / 100, 0, 1), clamp(third / 100, 0, 1));
+        } else {
+            rgb = (channel(first, (percents & 1) != 0) << 16) | (channel(second, (percents & 1 << 1) != 0) << 8)
+                    | channel(third, (percents & 1 << 2) != 0);
+        }
+        return ((long) a << 24) | rgb;
+    }
+
+    private static int channel(float value, boolean percent) {
+        float v = percent ? value * 255 / 100 : value;
+        return (int) clamp(v, 0, 255);
+    }
+
+    /**
+     * @param hue        色相，单位是度
+     * @param saturation 饱和度 0~1
+     * @param lightness  亮度 0~1
+     * @return 不带透明度的 RGB 颜色值
+     */
+    private static int hslToRgb(float hue, float saturation, float lightness) {
+        float h = (hue % 360 + 360) % 360 / 360;
+        float q = lightness < 0.5f ? lightness * (1 + saturation) : lightness + saturation - lightness * saturation;
+        float p = 2 * lightness - q;
+        int r = Math.round(hueToChannel(p, q, h + 1f / 3) * 255);
+        int g = Math.round(hueToChannel(p, q, h) * 255);
+        int b = Math.round(hueToChannel(p, q, h - 1f / 3) * 255);
+        return (r << 16) | (g << 8) | b;
+    }
+
+    private static float hueToChannel(float p, float q, float t) {
+        if (t < 0) {
+            t += 1;
+        } else if (t > 1) {
+            t -= 1;
+        }
+        if (t < 1f / 6) {
+            return p + (q - p) * 6 * t;
+        } else if (t < 1f / 2) {
+            return q;
+        } else if (t < 2f / 3) {
+            return p + (q - p) * (2f / 3 - t) * 6;
+        }
+        return p;
+    }
+
+    private static float clamp(float value, float min, float max) {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    /**
+     * 解析只包含数字和小数点的浮点数
+     *
+     * @return 解析的结果，格式不对时返回 NaN
+     */
+    static float parseFloat(String value, int start, int end) {
+        float result = 0;
+        float scale = 0;
+        boolean digits = false;
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c == '.') {
+                if (scale != 0) {
+                    return Float.NaN;
+                }
+                scale = 1;
+            } else if (isDigit(c)) {
+                digits = true;
+                if (scale == 0) {
+                    result = result * 10 + (c - '0');
+                } else {
+                    scale /= 10;
+                    result += (c - '0') * scale;
+                }
+            } else {
+                return Float.NaN;
+            }
+        }
+        return digits ? result : Float.NaN;
+    }
+
+    static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    static int skipWhitespace(String value, int from, int to) {
+        while (from < to && Character.isWhitespace(value.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    /**
+     * 字符串到颜色值的缓存，按字符串的哈希值直接映射到固定的槽位，冲突时新的值覆盖旧的。
+     * 读写都不加锁：槽位中是不可变的 {@link Entry}，其他线程读到的要么是完整的旧值，要么是完整的新值，
+     * 最坏的情况只是重新解析一次
+     */
+    private static final class Memo {
+        static final long MISSING = Long.MIN_VALUE;
+
+        private final Entry[] entries = new Entry[MEMO_SIZE];
+
+        /**
+         * @return 缓存的颜色值，没有缓存时返回 {@link #MISSING}
+         */
+        long get(String value) {
+            Entry entry = entries[indexOf(value)];
+            return entry != null && entry.value.equals(value) ? entry.color : MISSING;
+        }
+
+        void put(String value, long color) {
+            entries[indexOf(value)] = new Entry(value, color);
+        }
+
+        private static int indexOf(String value) {
+            int hash = value.hashCode();
+            return (hash ^ (hash >>> 16)) & (MEMO_SIZE - 1);
+        }
+    }
+
+    private static final class Entry {
+        final String value;
+        final long color;
+
+        Entry(String value, long color) {
+            this.value = value;
+            this.color = color;
+        }
+    }
+}
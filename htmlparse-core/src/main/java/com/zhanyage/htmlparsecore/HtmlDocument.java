@@ -0,0 +1,203 @@
+package com.zhanyage.htmlparsecore;
+
+import java.util.Arrays;
+
+/**
+ * 解析后的 html 文档：一段纯文本加上一组有类型的样式区间，不依赖任何平台的文本类。
+ * <p>
+ * 区间按字段打包在一个 int 数组里（type、start、end、value、extra），字符串字段单独存放，
+ * 每个区间只占几个数组元素，不会为每个样式创建对象。实例不可变，可以在线程之间共享
+ */
+public final class HtmlDocument {
+    private static final int FIELD_TYPE = 0;
+    private static final int FIELD_START = 1;
+    private static final int FIELD_END = 2;
+    private static final int FIELD_VALUE = 3;
+    private static final int FIELD_EXTRA = 4;
+    static final int FIELD_COUNT = 5;
+
+    private final String text;
+    private final int runCount;
+    private final int[] runs;
+    // 每个区间两个字符串：string、secondString
+    private final String[] strings;
+    private final int tagCount;
+
+    /**
+     * runs 按 type、start、end、value、extra 打包，strings 每个区间两个元素，由调用方保证长度一致
+     */
+    HtmlDocument(String text, int runCount, int[] runs, String[] strings, int tagCount) {
+        this.text = text;
+        this.runCount = runCount;
+        this.runs = runs;
+        this.strings = strings;
+        this.tagCount = tagCount;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public int getRunCount() {
+        return runCount;
+    }
+
+    /**
+     * @return 区间的类型，见 {@link StyleRun}
+     */
+    public int getRunType(int index) {
+        return runs[index * FIELD_COUNT + FIELD_TYPE];
+    }
+
+    public int getRunStart(int index) {
+        return runs[index * FIELD_COUNT + FIELD_START];
+    }
+
+    public int getRunEnd(int index) {
+        return runs[index * FIELD_COUNT + FIELD_END];
+    }
+
+    public int getRunValue(int index) {
+        return runs[index * FIELD_COUNT + FIELD_VALUE];
+    }
+
+    public int getRunExtra(int index) {
+        return runs[index * FIELD_COUNT + FIELD_EXTRA];
+    }
+
+    public String getRunString(int index) {
+        return strings[index * 2];
+    }
+
+    public String getRunSecondString(int index) {
+        return strings[index * 2 + 1];
+    }
+
+    /**
+     * @return {@link HtmlParser} 解析时遇到的开始标签个数，不包括注释和 script 等标签中的内容；
+     * 解码得到的文档和直接构建的文档为 0
+     */
+    public int getTagCount() {
+        return tagCount;
+    }
+
+    /**
+     * 逐步构建 {@link HtmlDocument}，不是线程安全的
+     */
+    public static final class Builder {
+        private final StringBuilder text;
+        private int runCount;
+        private int[] runs = new int[16 * FIELD_COUNT];
+        private String[] strings = new String[16 * 2];
+        private int tagCount;
+
+        public Builder() {
+            this(16);
+        }
+
+        /**
+         * @param capacity 预计的文本长度
+         */
+        public Builder(int capacity) {
+            text = new StringBuilder(capacity);
+        }
+
+        public Builder append(char c) {
+            text.append(c);
+            return this;
+        }
+
+        public Builder append(CharSequence s) {
+            text.append(s);
+            return this;
+        }
+
+        public int length() {
+            return text.length();
+        }
+
+        public char charAt(int index) {
+            return text.charAt(index);
+        }
+
+        public int getRunCount() {
+            return runCount;
+        }
+
+        public Builder addRun(int type, int start, int end, int value, int extra) {
+            return addRun(type, start, end, value, extra, null, null);
+        }
+
+        public Builder addRun(int type, int start, int end, int value, int extra,
+                              String string, String secondString) {
+            if (start < 0 || end < start || end > text.length()) {
+                throw new IllegalArgumentException("run [" + start + ", " + end
+                        + ") is out of text length " + text.length());
+            }
+            if (runCount * FIELD_COUNT == runs.length) {
+                runs = Arrays.copyOf(runs, runs.length * 2);
+                strings = Arrays.copyOf(strings, strings.length * 2);
+            }
+            int offset = runCount * FIELD_COUNT;
+            runs[offset + FIELD_TYPE] = type;
+            runs[offset + FIELD_START] = start;
+            runs[offset + FIELD_END] = end;
+            runs[offset + FIELD_VALUE] = value;
+            runs[offset + FIELD_EXTRA] = extra;
+            strings[runCount * 2] = string;
+            strings[runCount * 2 + 1] = secondString;
+            runCount++;
+            return this;
+        }
+
+        int getRunType(int index) {
+            return runs[index * FIELD_COUNT + FIELD_TYPE];
+        }
+
+        int getRunStart(int index) {
+            return runs[index * FIELD_COUNT + FIELD_START];
+        }
+
+        int getRunEnd(int index) {
+            return runs[index * FIELD_COUNT + FIELD_END];
+        }
+
+        void setRunEnd(int index, int end) {
+            runs[index * FIELD_COUNT + FIELD_END] = end;
+        }
+
+        /**
+         * 去掉 start == end 的区间，保持其余区间的顺序
+         */
+        void removeEmptyRuns() {
+            int count = 0;
+            for (int i = 0; i < runCount; i++) {
+                if (getRunStart(i) == getRunEnd(i)) {
+                    continue;
+                }
+                if (count != i) {
+                    System.arraycopy(runs, i * FIELD_COUNT, runs, count * FIELD_COUNT, FIELD_COUNT);
+                    strings[count * 2] = strings[i * 2];
+                    strings[count * 2 + 1] = strings[i * 2 + 1];
+                }
+                count++;
+            }
+            Arrays.fill(strings, count * 2, runCount * 2, null);
+            runCount = count;
+        }
+
+        /**
+         * 由 {@link HtmlParser} 记录解析时的开始标签个数
+         */
+        Builder setTagCount(int tagCount) {
+            this.tagCount = tagCount;
+            return this;
+        }
+
+        public HtmlDocument build() {
+            return new HtmlDocument(text.toString(), runCount,
+                    Arrays.copyOf(runs, runCount * FIELD_COUNT),
+                    Arrays.copyOf(strings, runCount * 2), tagCount);
+        }
+    }
+}
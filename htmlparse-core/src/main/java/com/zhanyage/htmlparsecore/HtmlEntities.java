@@ -0,0 +1,198 @@
+package com.zhanyage.htmlparsecore;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * html 字符实体的解码，支持 &amp;#123;、&amp;#x7B;、ISO 8859-1 和其他常用的命名实体
+ */
+final class HtmlEntities {
+    /**
+     * 实体名称的最大长度，超过后不再向后查找 ';'
+     */
+    private static final int MAX_NAME_LENGTH = 10;
+
+    private static final Map<String, Character> sEntities = new HashMap<>();
+
+    /**
+     * ISO 8859-1 中 U+00A0 到 U+00FF 的命名实体，按码位排列
+     */
+    private static final String[] LATIN1 = {
+            "nbsp", "iexcl", "cent", "pound", "curren", "yen", "brvbar", "sect", "uml", "copy", "ordf",
+            "laquo", "not", "shy", "reg", "macr", "deg", "plusmn", "sup2", "sup3", "acute", "micro", "para",
+            "middot", "cedil", "sup1", "ordm", "raquo", "frac14", "frac12", "frac34", "iquest", "Agrave",
+            "Aacute", "Acirc", "Atilde", "Auml", "Aring", "AElig", "Ccedil", "Egrave", "Eacute", "Ecirc",
+            "Euml", "Igrave", "Iacute", "Icirc", "Iuml", "ETH", "Ntilde", "Ograve", "Oacute", "Ocirc",
+            "Otilde", "Ouml", "times", "Oslash", "Ugrave", "Uacute", "Ucirc", "Uuml", "Yacute", "THORN",
+            "szlig", "agrave", "aacute", "acirc", "atilde", "auml", "aring", "aelig", "ccedil", "egrave",
+            "eacute", "ecirc", "euml", "igrave", "iacute", "icirc", "iuml", "eth", "ntilde", "ograve",
+            "oacute", "ocirc", "otilde", "ouml", "divide", "oslash", "ugrave", "uacute", "ucirc", "uuml",
+            "yacute", "thorn", "yuml"};
+
+    static {
+        for (int i = 0; i < LATIN1.length; i++) {
+            put(LATIN1[i], (char) (0xA0 + i));
+        }
+        put("amp", '&');
+        put("lt", '<');
+        put("gt", '>');
+        put("quot", '"');
+        put("apos", '\'');
+        put("ensp", '\u2002');
+        put("emsp", '\u2003');
+        put("thinsp", '\u2009');
+        put("zwnj", '\u200C');
+        put("zwj", '\u200D');
+        put("trade", '™');
+        put("hellip", '…');
+        put("mdash", '—');
+        put("ndash", '–');
+        put("lsquo", '‘');
+        put("rsquo", '’');
+        put("sbquo", '‚');
+        put("ldquo", '“');
+        put("rdquo", '”');
+        put("bdquo", '„');
+        put("lsaquo", '‹');
+        put("rsaquo", '›');
+        put("bull", '•');
+        put("prime", '′');
+        put("Prime", '″');
+        put("minus", '−');
+        put("euro", '€');
+        put("larr", '←');
+        put("uarr", '↑');
+        put("rarr", '→');
+        put("darr", '↓');
+        put("harr", '↔');
+        put("le", '≤');
+        put("ge", '≥');
+        put("ne", '≠');
+        put("asymp", '≈');
+        put("infin", '∞');
+        put("hearts", '♥');
+        put("check", '✓');
+    }
+
+    private static void put(String name, char c) {
+        sEntities.put(name, c);
+    }
+
+    private HtmlEntities() {
+    }
+
+    /**
+     * 解码从 '&amp;' 开始的实体，解码成功时把字符写入 out。
+     * 和 TagSoup 一致，amp、lt、gt、quot 以及 ISO 8859-1 中的命名实体可以省略 ';'，
+     * 但后面紧跟 '=' 时不解码，以免改变 url 中的参数，例如 "?a=1&amp;copy=2"
+     *
+     * @param start '&amp;' 所在的位置
+     * @return 实体结束后的位置，不是合法的实体时返回 -1
+     */
+    static int decode(String html, int start, int end, StringBuilder out) {
+        int semicolon = -1;
+        int nameEnd = start + 1;
+        int limit = Math.min(end, start + MAX_NAME_LENGTH + 2);
+        for (; nameEnd < limit; nameEnd++) {
+            char c = html.charAt(nameEnd);
+            if (c == ';') {
+                semicolon = nameEnd;
+                break;
+            }
+            if (!Character.isLetterOrDigit(c) && c != '#') {
+                break;
+            }
+        }
+        if (semicolon < 0) {
+            return decodeLegacy(html, start, nameEnd, end, out);
+        }
+        if (semicolon == start + 1) {
+            return -1;
+        }
+
+        if (html.charAt(start + 1) == '#') {
+            int codePoint = parseCodePoint(html, start + 2, semicolon);
+            if (codePoint < 0) {
+                return -1;
+            }
+            out.appendCodePoint(codePoint);
+            return semicolon + 1;
+        }
+
+        Character c = sEntities.get(html.substring(start + 1, semicolon));
+        if (c == null) {
+            return -1;
+        }
+        out.append(c.charValue());
+        return semicolon + 1;
+    }
+
+    /**
+     * 解码没有 ';' 的命名实体
+     *
+     * @param nameEnd 实体名称之后的位置
+     */
+    private static int decodeLegacy(String html, int start, int nameEnd, int end, StringBuilder out) {
+        if (nameEnd == start + 1 || nameEnd < end
+                && (html.charAt(nameEnd) == '=' || Character.isLetterOrDigit(html.charAt(nameEnd)))) {
+            return -1;
+        }
+        Character c = sEntities.get(html.substring(start + 1, nameEnd));
+        // '\'' 以外码位不超过 U+00FF 的实体即 amp、lt、gt、quot 和 ISO 8859-1 中的实体
+        if (c == null || c > '\u00FF' || c == '\'') {
+            return -1;
+        }
+        out.append(c.charValue());
+        return nameEnd;
+    }
+
+    /**
+     * 解码属性值中的实体，没有实体时直接返回原字符串
+     */
+    static String decodeAll(String value) {
+        int amp = value.indexOf('&');
+        if (amp < 0) {
+            return value;
+        }
+        final int length = value.length();
+        StringBuilder out = new StringBuilder(length);
+        out.append(value, 0, amp);
+        int i = amp;
+        while (i < length) {
+            char c = value.charAt(i);
+            if (c == '&') {
+                int next = decode(value, i, length, out);
+                if (next > 0) {
+                    i = next;
+                    continue;
+                }
+            }
+            out.append(c);
+            i++;
+        }
+        return out.toString();
+    }
+
+    private static int parseCodePoint(String html, int start, int end) {
+        int radix = 10;
+        if (start < end && (html.charAt(start) == 'x' || html.charAt(start) == 'X')) {
+            radix = 16;
+            start++;
+        }
+        if (start == end || end - start > 8) {
+            return -1;
+        }
+        int codePoint = 0;
+        for (int i = start; i < end; i++) {
+            int digit = Character.digit(html.charAt(i), radix);
+            if (digit < 0) {
+                return -1;
+            }
+            codePoint = codePoint * radix + digit;
+        }
+        if (codePoint == 0 || !Character.isValidCodePoint(codePoint)) {
+            return -1;
+        }
+        return codePoint;
+    }
+}
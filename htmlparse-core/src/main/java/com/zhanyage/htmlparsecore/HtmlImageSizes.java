@@ -0,0 +1,46 @@
+package com.zhanyage.htmlparsecore;
+
+import java.util.Arrays;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 按出现的顺序收集 html 中 img 标签的 width、height 属性，图片加载前用来确定占位图的大小
+ */
+public final class HtmlImageSizes {
+    private static final Pattern IMAGE_TAG_PATTERN = Pattern.compile("<(img|IMG)\\s+([^>]*)>");
+    private static final Pattern IMAGE_WIDTH_PATTERN = Pattern.compile("(width|WIDTH)\\s*=\\s*\"?(\\w+)\"?");
+    private static final Pattern IMAGE_HEIGHT_PATTERN = Pattern.compile("(height|HEIGHT)\\s*=\\s*\"?(\\w+)\"?");
+
+    private HtmlImageSizes() {
+    }
+
+    /**
+     * @param source 原始 html
+     * @return 每张图片占两个元素：width、height，没有属性或者无法解析时为 -1
+     */
+    public static int[] scan(String source) {
+        int[] sizes = new int[8];
+        int count = 0;
+        Matcher imageMatcher = IMAGE_TAG_PATTERN.matcher(source);
+        while (imageMatcher.find()) {
+            String attrs = imageMatcher.group(2).trim();
+            int width = -1;
+            int height = -1;
+            Matcher widthMatcher = IMAGE_WIDTH_PATTERN.matcher(attrs);
+            if (widthMatcher.find()) {
+                width = HtmlParser.parseInt(widthMatcher.group(2), -1);
+            }
+            Matcher heightMatcher = IMAGE_HEIGHT_PATTERN.matcher(attrs);
+            if (heightMatcher.find()) {
+                height = HtmlParser.parseInt(heightMatcher.group(2), -1);
+            }
+            if (count + 2 > sizes.length) {
+                sizes = Arrays.copyOf(sizes, sizes.length * 2);
+            }
+            sizes[count++] = width;
+            sizes[count++] = height;
+        }
+        return Arrays.copyOf(sizes, count);
+    }
+}
@@ -0,0 +1,902 @@
+package com.zhanyage.htmlparsecore;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 手写的 html 解析器，一次扫描把 html 解析成 {@link HtmlDocument}，不依赖 Android 和 TagSoup。
+ * <p>
+ * 支持的标签和排版规则与 {@link HtmlTagRewriter} 加上 htmlparselib 中 HtmlTagHandler、Html.fromHtml 的组合一致：
+ * <ul>
+ * <li>文本中的换行当作 &lt;br&gt;，连续的空格合并为一个</li>
+ * <li>p、div、li、h1~h6、blockquote、center 按原来的规则补齐换行</li>
+ * <li>span、b、p、a、u、i 的 style 属性支持 color、background-color、font-size、font-weight、text-decoration，
+ * p、h1~h6、blockquote 支持 text-align</li>
+ * <li>&lt;div&gt;&lt;img ...&gt;&lt;/div&gt; 只保留中间的图片，不额外换行</li>
+ * </ul>
+ * 不认识的标签会被忽略，只保留其中的文字；script、style、title 中的内容会被丢弃。
+ * 结束标签会关闭最近的同名标签以及在它之后打开的标签，没有对应开始标签的结束标签会被忽略。
+ * 和 TagSoup 一样，li、p、dt、dd、option 可以省略结束标签：新的 li 会关闭同一个列表中还没有结束的 li，
+ * dt、dd 互相关闭，option 关闭前一个 option，块级标签会关闭还没有结束的 p
+ */
+public final class HtmlParser {
+    /**
+     * {@link #parseFontStep(String)} 无法解析时的返回值
+     */
+    public static final int NO_FONT_STEP = Integer.MIN_VALUE;
+
+    private static final char OBJECT_REPLACEMENT = '\uFFFC';
+
+    private static final int TAG_UNKNOWN = 0;
+    private static final int TAG_PARAGRAPH = 1;
+    private static final int TAG_DIV = 2;
+    private static final int TAG_BR = 3;
+    private static final int TAG_UNORDERED_LIST = 4;
+    private static final int TAG_ORDERED_LIST = 5;
+    private static final int TAG_LIST_ITEM = 6;
+    private static final int TAG_BOLD = 7;
+    private static final int TAG_ITALIC = 8;
+    private static final int TAG_UNDERLINE = 9;
+    private static final int TAG_STRIKE = 10;
+    private static final int TAG_MONOSPACE = 11;
+    private static final int TAG_CENTER = 12;
+    private static final int TAG_SPAN = 13;
+    private static final int TAG_FONT = 14;
+    private static final int TAG_ANCHOR = 15;
+    private static final int TAG_IMG = 16;
+    private static final int TAG_VIDEO = 17;
+    private static final int TAG_HEADING = 18;
+    private static final int TAG_BLOCKQUOTE = 19;
+    private static final int TAG_BIG = 20;
+    private static final int TAG_SMALL = 21;
+    private static final int TAG_SUPERSCRIPT = 22;
+    private static final int TAG_SUBSCRIPT = 23;
+    /**
+     * 内容不展示的标签
+     */
+    private static final int TAG_RAW_TEXT = 24;
+    private static final int TAG_MASK = 0xFF;
+
+    /**
+     * 会解析 style 中颜色、大小的标签，和 HtmlTagHandler 调用 startSpan 的标签一致
+     */
+    private static final int FLAG_STYLED = 1 << 8;
+    /**
+     * 没有内容和结束标签的标签
+     */
+    private static final int FLAG_VOID = 1 << 9;
+    /**
+     * 块级标签，开始时会关闭还没有结束的 p
+     */
+    private static final int FLAG_BLOCK = 1 << 10;
+
+    /*
+     * 隐式关闭标签时向上查找的边界，例如新的 li 不会关闭外层列表中的 li
+     */
+    private static final String[] LIST_SCOPE = {"ul", "ol"};
+    private static final String[] DEFINITION_SCOPE = {"dl"};
+    private static final String[] SELECT_SCOPE = {"select"};
+    private static final String[] PARAGRAPH_SCOPE = {"table", "td", "th"};
+
+    private static final float[] HEADING_SIZES = {1.5f, 1.4f, 1.3f, 1.2f, 1.1f, 1f};
+    /**
+     * p 标签前后的换行数
+     */
+    private static final int MARGIN_PARAGRAPH = 1;
+    /**
+     * h1~h6、blockquote 前后的换行数
+     */
+    private static final int MARGIN_BLOCK = 2;
+
+    private static final String DIV_START = "<div>";
+    private static final String DIV_END = "</div>";
+    private static final String IMG_START = "<img";
+
+    private static final Map<String, Integer> sTags = new HashMap<>();
+
+    static {
+        sTags.put("p", TAG_PARAGRAPH | FLAG_STYLED | FLAG_BLOCK);
+        sTags.put("div", TAG_DIV | FLAG_BLOCK);
+        sTags.put("br", TAG_BR | FLAG_VOID);
+        sTags.put("ul", TAG_UNORDERED_LIST | FLAG_BLOCK);
+        sTags.put("ol", TAG_ORDERED_LIST | FLAG_BLOCK);
+        sTags.put("li", TAG_LIST_ITEM | FLAG_BLOCK);
+        sTags.put("b", TAG_BOLD | FLAG_STYLED);
+        sTags.put("strong", TAG_BOLD);
+        sTags.put("i", TAG_ITALIC | FLAG_STYLED);
+        sTags.put("em", TAG_ITALIC);
+        sTags.put("cite", TAG_ITALIC);
+        sTags.put("dfn", TAG_ITALIC);
+        sTags.put("u", TAG_UNDERLINE | FLAG_STYLED);
+        sTags.put("s", TAG_STRIKE);
+        sTags.put("strike", TAG_STRIKE);
+        sTags.put("del", TAG_STRIKE);
+        sTags.put("code", TAG_MONOSPACE);
+        sTags.put("tt", TAG_MONOSPACE);
+        sTags.put("center", TAG_CENTER | FLAG_BLOCK);
+        sTags.put("span", TAG_SPAN | FLAG_STYLED);
+        sTags.put("font", TAG_FONT);
+        sTags.put("a", TAG_ANCHOR | FLAG_STYLED);
+        sTags.put("img", TAG_IMG | FLAG_VOID);
+        sTags.put("video", TAG_VIDEO);
+        for (int level = 1; level <= 6; level++) {
+            sTags.put("h" + level, TAG_HEADING | FLAG_BLOCK);
+        }
+        sTags.put("blockquote", TAG_BLOCKQUOTE | FLAG_BLOCK);
+        sTags.put("big", TAG_BIG);
+        sTags.put("small", TAG_SMALL);
+        sTags.put("sup", TAG_SUPERSCRIPT);
+        sTags.put("sub", TAG_SUBSCRIPT);
+        sTags.put("script", TAG_RAW_TEXT);
+        sTags.put("style", TAG_RAW_TEXT);
+        sTags.put("title", TAG_RAW_TEXT);
+        String[] voidTags = {"input", "meta", "link", "wbr", "area", "base", "col",
+                "embed", "param", "source", "track"};
+        for (String tag : voidTags) {
+            sTags.put(tag, TAG_UNKNOWN | FLAG_VOID);
+        }
+        sTags.put("hr", TAG_UNKNOWN | FLAG_VOID | FLAG_BLOCK);
+        // 没有样式的块级标签，只用来关闭 p
+        String[] blockTags = {"dl", "dt", "dd", "pre", "table", "form", "fieldset", "address", "article",
+                "aside", "section", "header", "footer", "nav", "main", "figure", "figcaption", "details",
+                "summary", "menu", "dir"};
+        for (String tag : blockTags) {
+            sTags.put(tag, TAG_UNKNOWN | FLAG_BLOCK);
+        }
+    }
+
+    private final String html;
+    private final int length;
+    private final HtmlDocument.Builder builder;
+    private final StringBuilder scratch = new StringBuilder();
+    private int tagCount;
+
+    // 打开的标签，按深度复用对象
+    private Element[] elements = new Element[16];
+    private int depth;
+    // 打开的 li、p 的个数，没有时不需要查找要隐式关闭的标签
+    private int openListItems;
+    private int openParagraphs;
+
+    // 当前标签的属性
+    private String[] attrNames = new String[8];
+    private String[] attrValues = new String[8];
+    private int attrCount;
+    private boolean selfClosing;
+
+    // 打开的列表，以及有序列表的下一个序号
+    private int[] listTypes = new int[8];
+    private int[] listNext = new int[8];
+    private int listDepth;
+
+    private HtmlParser(String html) {
+        this.html = html;
+        this.length = html.length();
+        this.builder = new HtmlDocument.Builder(length);
+    }
+
+    /**
+     * 解析 html，可以在任意线程调用
+     *
+     * @param html 原始 html，不需要经过 {@link HtmlTagRewriter} 处理
+     * @return 解析后的文档
+     */
+    public static HtmlDocument parse(String html) {
+        if (html == null || html.length() == 0) {
+            return new HtmlDocument.Builder(0).build();
+        }
+        return new HtmlParser(html).parse();
+    }
+
+    /**
+     * 统计开始标签的个数，即 '&lt;' 后面紧跟字母的位置，不区分注释和脚本中的内容。
+     * 用于不经过 {@link #parse(String)} 的 html，解析过的文档直接使用 {@link HtmlDocument#getTagCount()}
+     */
+    public static int countTags(String html) {
+        int count = 0;
+        int i = html.indexOf('<');
+        while (i >= 0 && i + 1 < html.length()) {
+            if (isLetter(html.charAt(i + 1))) {
+                count++;
+            }
+            i = html.indexOf('<', i + 1);
+        }
+        return count;
+    }
+
+    private HtmlDocument parse() {
+        int i = 0;
+        while (i < length) {
+            char c = html.charAt(i);
+            if (c == '<') {
+                i = parseMarkup(i);
+            } else if (c == '&') {
+                i = parseEntity(i);
+            } else {
+                if (c == '\n') {
+                    // 和 HtmlTagRewriter 把换行替换为 <br> 一致
+                    builder.append('\n');
+                } else if (c == '\r') {
+                    // \r\n 当作一个换行，单独的 \r 和空格一样合并
+                    if (i + 1 >= length || html.charAt(i + 1) != '\n') {
+                        appendText(' ');
+                    }
+                } else {
+                    appendText(c);
+                }
+                i++;
+            }
+        }
+        while (depth > 0) {
+            closeTop();
+        }
+        fixParagraphRuns();
+        return builder.setTagCount(tagCount).build();
+    }
+
+    /**
+     * 和 Html.fromHtml 一致，空格和换行合并为一个空格，段落开头的空格会被去掉
+     */
+    private void appendText(char c) {
+        if (c == ' ' || c == '\n') {
+            int len = builder.length();
+            char pred = len == 0 ? '\n' : builder.charAt(len - 1);
+            if (pred != ' ' && pred != '\n') {
+                builder.append(' ');
+            }
+        } else {
+            builder.append(c);
+        }
+    }
+
+    private int parseEntity(int start) {
+        scratch.setLength(0);
+        int next = HtmlEntities.decode(html, start, length, scratch);
+        if (next < 0) {
+            appendText('&');
+            return start + 1;
+        }
+        for (int i = 0; i < scratch.length(); i++) {
+            appendText(scratch.charAt(i));
+        }
+        return next;
+    }
+
+    /**
+     * 解析从 start（'&lt;' 所在位置）开始的标签、注释或声明
+     *
+     * @return 解析结束后的下一个位置
+     */
+    private int parseMarkup(int start) {
+        if (html.startsWith("<!--", start)) {
+            int end = html.indexOf("-->", start + 4);
+            return end < 0 ? length : end + 3;
+        }
+        char next = start + 1 < length ? html.charAt(start + 1) : 0;
+        if (next == '!' || next == '?') {
+            int end = html.indexOf('>', start + 2);
+            return end < 0 ? length : end + 1;
+        }
+
+        int unwrapped = unwrapImageDiv(start);
+        if (unwrapped >= 0) {
+            return unwrapped;
+        }
+
+        boolean closing = next == '/';
+        int nameStart = closing ? start + 2 : start + 1;
+        if (nameStart >= length || !isLetter(html.charAt(nameStart))) {
+            // 不是标签，例如 "a < b"，当作普通文本
+            appendText('<');
+            return start + 1;
+        }
+        int nameEnd = nameStart + 1;
+        while (nameEnd < length && isNameChar(html.charAt(nameEnd))) {
+            nameEnd++;
+        }
+        String name = html.substring(nameStart, nameEnd).toLowerCase(Locale.US);
+
+        attrCount = 0;
+        selfClosing = false;
+        int end = parseAttributes(nameEnd);
+        if (closing) {
+            handleEndTag(name);
+            return end;
+        }
+        tagCount++;
+
+        Integer info = sTags.get(name);
+        int tag = info == null ? TAG_UNKNOWN : info;
+        if ((tag & TAG_MASK) == TAG_RAW_TEXT) {
+            return selfClosing ? end : skipRawText(name, end);
+        }
+        handleStartTag(name, tag);
+        return end;
+    }
+
+    /**
+     * 和 HtmlTagRewriter 一致，&lt;div&gt;&lt;img ...&gt;&lt;/div&gt; 只保留中间的 img 标签
+     *
+     * @return 处理后的下一个位置，不匹配时返回 -1
+     */
+    private int unwrapImageDiv(int start) {
+        if (!html.regionMatches(true, start, DIV_START, 0, DIV_START.length())) {
+            return -1;
+        }
+        int imgStart = start + DIV_START.length();
+        int afterImg = imgStart + IMG_START.length();
+        if (!html.regionMatches(true, imgStart, IMG_START, 0, IMG_START.length())
+                || afterImg >= length
+                || !Character.isWhitespace(html.charAt(afterImg))) {
+            return -1;
+        }
+        int imgEnd = html.indexOf('>', afterImg);
+        if (imgEnd < 0 || !html.regionMatches(true, imgEnd + 1, DIV_END, 0, DIV_END.length())) {
+            return -1;
+        }
+        tagCount++;
+        parseMarkup(imgStart);
+        return imgEnd + 1 + DIV_END.length();
+    }
+
+    /**
+     * 解析标签名之后的属性，属性值中的 '&gt;' 不会结束标签
+     *
+     * @return 标签结束后的下一个位置
+     */
+    private int parseAttributes(int from) {
+        int i = from;
+        while (i < length) {
+            char c = html.charAt(i);
+            if (c == '>') {
+                return i + 1;
+            }
+            if (c == '/' || Character.isWhitespace(c)) {
+                if (c == '/' && i + 1 < length && html.charAt(i + 1) == '>') {
+                    selfClosing = true;
+                    return i + 2;
+                }
+                i++;
+                continue;
+            }
+
+            int nameStart = i;
+            while (i < length) {
+                c = html.charAt(i);
+                if (c == '=' || c == '>' || c == '/' || Character.isWhitespace(c)) {
+                    break;
+                }
+                i++;
+            }
+            if (i == nameStart) {
+                // 没有属性名的 '='
+                i++;
+                continue;
+            }
+            String name = html.substring(nameStart, i).toLowerCase(Locale.US);
+
+            String value = "";
+            int valueStart = skipWhitespace(i);
+            if (valueStart < length && html.charAt(valueStart) == '=') {
+                i = skipWhitespace(valueStart + 1);
+                char quote = i < length ? html.charAt(i) : 0;
+                if (quote == '"' || quote == '\'') {
+                    int valueEnd = html.indexOf(quote, i + 1);
+                    if (valueEnd < 0) {
+                        valueEnd = length;
+                    }
+                    value = html.substring(i + 1, valueEnd);
+                    i = Math.min(valueEnd + 1, length);
+                } else {
+                    int unquotedStart = i;
+                    while (i < length && html.charAt(i) != '>' && !Character.isWhitespace(html.charAt(i))) {
+                        i++;
+                    }
+                    value = html.substring(unquotedStart, i);
+                }
+                value = HtmlEntities.decodeAll(value);
+            }
+            addAttribute(name, value);
+        }
+        return length;
+    }
+
+    private void addAttribute(String name, String value) {
+        if (attrCount == attrNames.length) {
+            attrNames = Arrays.copyOf(attrNames, attrCount * 2);
+            attrValues = Arrays.copyOf(attrValues, attrCount * 2);
+        }
+        attrNames[attrCount] = name;
+        attrValues[attrCount] = value;
+        attrCount++;
+    }
+
+    private String getAttribute(String name) {
+        for (int i = 0; i < attrCount; i++) {
+            if (attrNames[i].equals(name)) {
+                return attrValues[i];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 跳过 script、style 等标签的内容
+     *
+     * @return 结束标签之后的位置
+     */
+    private int skipRawText(String name, int from) {
+        for (int i = html.indexOf("</", from); i >= 0; i = html.indexOf("</", i + 2)) {
+            if (html.regionMatches(true, i + 2, name, 0, name.length())) {
+                int end = html.indexOf('>', i + 2 + name.length());
+                return end < 0 ? length : end + 1;
+            }
+        }
+        return length;
+    }
+
+    private void handleStartTag(String name, int info) {
+        int tag = info & TAG_MASK;
+        closeImpliedTags(name, info);
+        InlineStyle style = null;
+        if ((info & FLAG_STYLED) != 0 || tag == TAG_HEADING || tag == TAG_BLOCKQUOTE) {
+            style = InlineStyle.parse(getAttribute("style"));
+        }
+
+        switch (tag) {
+            case TAG_BR:
+                builder.append('\n');
+                return;
+            case TAG_IMG:
+                appendImage();
+                return;
+            default:
+                break;
+        }
+        if ((info & FLAG_VOID) != 0) {
+            return;
+        }
+
+        Element e = push(tag, name);
+        switch (tag) {
+            case TAG_PARAGRAPH:
+                appendNewlines(MARGIN_PARAGRAPH);
+                break;
+            case TAG_DIV:
+                appendDivNewline();
+                break;
+            case TAG_UNORDERED_LIST:
+                pushList(StyleRun.BULLET, 0);
+                break;
+            case TAG_ORDERED_LIST:
+                pushList(StyleRun.NUMBER, parseInt(getAttribute("start"), 1));
+                break;
+            case TAG_LIST_ITEM:
+                appendNewlineIfNeeded();
+                if (listDepth > 0) {
+                    e.listType = listTypes[listDepth - 1];
+                    if (e.listType == StyleRun.NUMBER) {
+                        e.number = listNext[listDepth - 1]++;
+                    }
+                }
+                break;
+            case TAG_FONT:
+                e.fontColor = HtmlColors.parseFontColor(getAttribute("color"));
+                e.fontStep = parseFontStep(getAttribute("size"));
+                break;
+            case TAG_ANCHOR:
+                e.href = getAttribute("href");
+                break;
+            case TAG_VIDEO:
+                appendVideo();
+                break;
+            case TAG_HEADING:
+                appendNewlines(MARGIN_BLOCK);
+                e.level = name.charAt(1) - '1';
+                break;
+            case TAG_BLOCKQUOTE:
+                appendNewlines(MARGIN_BLOCK);
+                break;
+            default:
+                break;
+        }
+        if (style != null) {
+            if ((info & FLAG_STYLED) != 0) {
+                e.style = style;
+            }
+            if (tag == TAG_PARAGRAPH || tag == TAG_HEADING || tag == TAG_BLOCKQUOTE) {
+                e.align = style.textAlign;
+            }
+        }
+        e.start = builder.length();
+
+        if (selfClosing) {
+            closeTop();
+        }
+    }
+
+    /**
+     * 关闭被 name 标签隐式结束的 li、dt、dd、option、p
+     */
+    private void closeImpliedTags(String name, int info) {
+        if ((info & TAG_MASK) == TAG_LIST_ITEM) {
+            if (openListItems > 0) {
+                closeOpen("li", null, LIST_SCOPE);
+            }
+        } else if (name.equals("dt") || name.equals("dd")) {
+            closeOpen("dt", "dd", DEFINITION_SCOPE);
+        } else if (name.equals("option")) {
+            closeOpen("option", null, SELECT_SCOPE);
+        }
+        if ((info & FLAG_BLOCK) != 0 && openParagraphs > 0) {
+            closeOpen("p", null, PARAGRAPH_SCOPE);
+        }
+    }
+
+    /**
+     * 从栈顶向下查找名为 name 或 alternative 的标签，找到时关闭它以及之后打开的标签，遇到 scope 中的标签时停止
+     */
+    private void closeOpen(String name, String alternative, String[] scope) {
+        for (int i = depth - 1; i >= 0; i--) {
+            String open = elements[i].name;
+            if (open.equals(name) || open.equals(alternative)) {
+                while (depth > i) {
+                    closeTop();
+                }
+                return;
+            }
+            for (String boundary : scope) {
+                if (open.equals(boundary)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void handleEndTag(String name) {
+        for (int i = depth - 1; i >= 0; i--) {
+            if (elements[i].name.equals(name)) {
+                while (depth > i) {
+                    closeTop();
+                }
+                return;
+            }
+        }
+    }
+
+    private void closeTop() {
+        Element e = elements[--depth];
+        int len = builder.length();
+        switch (e.tag) {
+            case TAG_PARAGRAPH:
+                openParagraphs--;
+                addStyleRuns(e, len);
+                appendNewlines(MARGIN_PARAGRAPH);
+                addAlignmentRun(e);
+                break;
+            case TAG_DIV:
+                appendDivNewline();
+                break;
+            case TAG_UNORDERED_LIST:
+            case TAG_ORDERED_LIST:
+                if (listDepth > 0) {
+                    listDepth--;
+                }
+                break;
+            case TAG_LIST_ITEM:
+                openListItems--;
+                endListItem(e);
+                break;
+            case TAG_BOLD:
+                addStyleRuns(e, len);
+                addRun(StyleRun.BOLD, e.start, len, 0, 0);
+                break;
+            case TAG_ITALIC:
+                addStyleRuns(e, len);
+                addRun(StyleRun.ITALIC, e.start, len, 0, 0);
+                break;
+            case TAG_UNDERLINE:
+                addStyleRuns(e, len);
+                addRun(StyleRun.UNDERLINE, e.start, len, 0, 0);
+                break;
+            case TAG_STRIKE:
+                addRun(StyleRun.STRIKETHROUGH, e.start, len, 0, 0);
+                break;
+            case TAG_MONOSPACE:
+                addRun(StyleRun.MONOSPACE, e.start, len, 0, 0);
+                break;
+            case TAG_CENTER:
+                // 段落样式需要以换行结束
+                if (e.start != len) {
+                    builder.append('\n');
+                    addRun(StyleRun.ALIGNMENT, e.start, len + 1, StyleRun.ALIGN_CENTER, 0);
+                }
+                break;
+            case TAG_SPAN:
+                addStyleRuns(e, len);
+                break;
+            case TAG_FONT:
+                if (e.fontColor != HtmlColors.NONE) {
+                    addRun(StyleRun.FOREGROUND_COLOR, e.start, len, (int) e.fontColor, 0);
+                }
+                if (e.fontStep != NO_FONT_STEP) {
+                    addRun(StyleRun.TEXT_SIZE, e.start, len, e.fontStep, StyleRun.UNIT_FONT_STEP);
+                }
+                break;
+            case TAG_ANCHOR:
+                addStyleRuns(e, len);
+                if (e.href != null && e.start != len) {
+                    builder.addRun(StyleRun.LINK, e.start, len, 0, 0, e.href, null);
+                }
+                break;
+            case TAG_HEADING:
+                addRun(StyleRun.RELATIVE_SIZE, e.start, len, Float.floatToIntBits(HEADING_SIZES[e.level]), 0);
+                addRun(StyleRun.BOLD, e.start, len, 0, 0);
+                appendNewlines(MARGIN_BLOCK);
+                addAlignmentRun(e);
+                break;
+            case TAG_BLOCKQUOTE:
+                appendNewlines(MARGIN_BLOCK);
+                addAlignmentRun(e);
+                addRun(StyleRun.QUOTE, e.start, builder.length(), 0, 0);
+                break;
+            case TAG_BIG:
+                addRun(StyleRun.RELATIVE_SIZE, e.start, len, Float.floatToIntBits(1.25f), 0);
+                break;
+            case TAG_SMALL:
+                addRun(StyleRun.RELATIVE_SIZE, e.start, len, Float.floatToIntBits(0.8f), 0);
+                break;
+            case TAG_SUPERSCRIPT:
+                addRun(StyleRun.SUPERSCRIPT, e.start, len, 0, 0);
+                break;
+            case TAG_SUBSCRIPT:
+                addRun(StyleRun.SUBSCRIPT, e.start, len, 0, 0);
+                break;
+            default:
+                break;
+        }
+        e.clear();
+    }
+
+    private void endListItem(Element e) {
+        if (listDepth == 0) {
+            return;
+        }
+        appendNewlineIfNeeded();
+        int listType = listTypes[listDepth - 1];
+        if (e.listType != listType) {
+            // li 开始时不在同类的列表中
+            return;
+        }
+        int len = builder.length();
+        if (listType == StyleRun.BULLET) {
+            addRun(StyleRun.BULLET, e.start, len, listDepth, 0);
+        } else {
+            addRun(StyleRun.NUMBER, e.start, len, e.number, listDepth);
+        }
+    }
+
+    /**
+     * style 属性中的颜色、大小、粗体和下划线等，先于标签本身的样式记录
+     */
+    private void addStyleRuns(Element e, int len) {
+        InlineStyle style = e.style;
+        if (style == null) {
+            return;
+        }
+        if (style.color != HtmlColors.NONE) {
+            addRun(StyleRun.FOREGROUND_COLOR, e.start, len, (int) style.color, 0);
+        }
+        if (style.backgroundColor != HtmlColors.NONE) {
+            addRun(StyleRun.BACKGROUND_COLOR, e.start, len, (int) style.backgroundColor, 0);
+        }
+        if (style.fontSize > 0) {
+            addRun(StyleRun.TEXT_SIZE, e.start, len, style.fontSize, StyleRun.UNIT_DIP);
+        } else if (style.fontScale > 0) {
+            addRun(StyleRun.RELATIVE_SIZE, e.start, len, Float.floatToIntBits(style.fontScale), 0);
+        }
+        if (style.bold) {
+            addRun(StyleRun.BOLD, e.start, len, 0, 0);
+        }
+        if ((style.textDecoration & InlineStyle.DECORATION_UNDERLINE) != 0) {
+            addRun(StyleRun.UNDERLINE, e.start, len, 0, 0);
+        }
+        if ((style.textDecoration & InlineStyle.DECORATION_LINE_THROUGH) != 0) {
+            addRun(StyleRun.STRIKETHROUGH, e.start, len, 0, 0);
+        }
+    }
+
+    private void addAlignmentRun(Element e) {
+        if (e.align != InlineStyle.NO_ALIGN) {
+            addRun(StyleRun.ALIGNMENT, e.start, builder.length(), e.align, 0);
+        }
+    }
+
+    /**
+     * 记录样式区间，空的区间会被忽略
+     */
+    private void addRun(int type, int start, int end, int value, int extra) {
+        if (start != end) {
+            builder.addRun(type, start, end, value, extra);
+        }
+    }
+
+    private void appendImage() {
+        int start = builder.length();
+        builder.append(OBJECT_REPLACEMENT);
+        builder.addRun(StyleRun.IMAGE, start, start + 1,
+                parseInt(getAttribute("width"), -1), parseInt(getAttribute("height"), -1),
+                getAttribute("src"), null);
+    }
+
+    private void appendVideo() {
+        int start = builder.length();
+        builder.append(OBJECT_REPLACEMENT);
+        builder.addRun(StyleRun.VIDEO, start, start + 1, 0, 0,
+                getAttribute("poster"), getAttribute("src"));
+    }
+
+    private void appendNewlines(int minNewline) {
+        int len = builder.length();
+        if (len == 0) {
+            return;
+        }
+        int existingNewlines = 0;
+        for (int i = len - 1; i >= 0 && builder.charAt(i) == '\n'; i--) {
+            existingNewlines++;
+        }
+        for (int j = existingNewlines; j < minNewline; j++) {
+            builder.append('\n');
+        }
+    }
+
+    private void appendDivNewline() {
+        appendNewlineIfNeeded();
+    }
+
+    private void appendNewlineIfNeeded() {
+        int len = builder.length();
+        if (len > 0 && builder.charAt(len - 1) != '\n') {
+            builder.append('\n');
+        }
+    }
+
+    /**
+     * 和 Html.fromHtml 一致，段落样式的最后一行是空行时去掉这一行
+     */
+    private void fixParagraphRuns() {
+        boolean removed = false;
+        for (int i = 0; i < builder.getRunCount(); i++) {
+            if (!StyleRun.isParagraph(builder.getRunType(i))) {
+                continue;
+            }
+            int end = builder.getRunEnd(i);
+            if (end - 2 >= 0 && builder.charAt(end - 1) == '\n' && builder.charAt(end - 2) == '\n') {
+                builder.setRunEnd(i, end - 1);
+                removed |= builder.getRunStart(i) == end - 1;
+            }
+        }
+        if (removed) {
+            builder.removeEmptyRuns();
+        }
+    }
+
+    private Element push(int tag, String name) {
+        if (depth == elements.length) {
+            elements = Arrays.copyOf(elements, depth * 2);
+        }
+        Element e = elements[depth];
+        if (e == null) {
+            e = new Element();
+            elements[depth] = e;
+        }
+        depth++;
+        e.tag = tag;
+        e.name = name;
+        if (tag == TAG_PARAGRAPH) {
+            openParagraphs++;
+        } else if (tag == TAG_LIST_ITEM) {
+            openListItems++;
+        }
+        return e;
+    }
+
+    private void pushList(int type, int start) {
+        if (listDepth == listTypes.length) {
+            listTypes = Arrays.copyOf(listTypes, listDepth * 2);
+            listNext = Arrays.copyOf(listNext, listDepth * 2);
+        }
+        listTypes[listDepth] = type;
+        listNext[listDepth] = start;
+        listDepth++;
+    }
+
+    private int skipWhitespace(int from) {
+        return HtmlColors.skipWhitespace(html, from, length);
+    }
+
+    /**
+     * 解析 font 标签的 size 属性，取值 1~7，3 为默认大小，不使用异常
+     *
+     * @return 相对默认大小增加的值，没有 size 或者无法解析时返回 {@link #NO_FONT_STEP}
+     */
+    public static int parseFontStep(String size) {
+        int s = parseInt(size, NO_FONT_STEP);
+        if (s == NO_FONT_STEP) {
+            return s;
+        }
+        s = Math.max(s, 1);
+        s = Math.min(s, 7);
+        return s - 3;
+    }
+
+    /**
+     * 解析可以带正负号的整数，不使用异常
+     */
+    static int parseInt(String value, int defaultValue) {
+        if (value == null) {
+            return defaultValue;
+        }
+        int end = value.length();
+        int i = HtmlColors.skipWhitespace(value, 0, end);
+        while (end > i && Character.isWhitespace(value.charAt(end - 1))) {
+            end--;
+        }
+        boolean negative = false;
+        if (i < end && (value.charAt(i) == '-' || value.charAt(i) == '+')) {
+            negative = value.charAt(i) == '-';
+            i++;
+        }
+        if (i == end || end - i > 9) {
+            return defaultValue;
+        }
+        int n = 0;
+        for (; i < end; i++) {
+            char c = value.charAt(i);
+            if (!HtmlColors.isDigit(c)) {
+                return defaultValue;
+            }
+            n = n * 10 + (c - '0');
+        }
+        return negative ? -n : n;
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isNameChar(char c) {
+        return isLetter(c) || (c >= '0' && c <= '9') || c == '-' || c == '_' || c == ':';
+    }
+
+    /**
+     * 打开的标签以及结束时需要的信息
+     */
+    private static final class Element {
+        int tag;
+        String name;
+        int start;
+        InlineStyle style;
+        int align = InlineStyle.NO_ALIGN;
+        String href;
+        long fontColor = HtmlColors.NONE;
+        int fontStep = NO_FONT_STEP;
+        int listType;
+        int number;
+        int level;
+
+        void clear() {
+            name = null;
+            style = null;
+            align = InlineStyle.NO_ALIGN;
+            href = null;
+            fontColor = HtmlColors.NONE;
+            fontStep = NO_FONT_STEP;
+            listType = 0;
+            number = 0;
+            level = 0;
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.zhanyage.htmlparsecore;
+
+/**
+ * 单次扫描的标签重写器，把需要自定义处理的 html 标签重命名为 htmlparselib 中 HtmlTagHandler 能够接管的标签。
+ * <p>
+ * 只按完整的标签名匹配，所以 &lt;blockquote&gt;、&lt;big&gt;、&lt;img&gt; 之类的标签不会被
+ * &lt;b、&lt;i 的前缀替换误伤；所有输出都写到同一个预先分配好的 buffer 里。
+ */
+public final class HtmlTagRewriter {
+
+    public static final String UNORDERED_LIST = "HTML_TEXT_TAG_UL";
+    public static final String ORDERED_LIST = "HTML_TEXT_TAG_OL";
+    public static final String LIST_ITEM = "HTML_TEXT_TAG_LI";
+    public static final String FONT = "HTML_TEXT_TAG_FONT";
+    public static final String DIV = "HTML_TEXT_TAG_DIV";
+    public static final String SPAN = "HTML_SPAN_STYLE";
+    public static final String BSTYLE = "HTML_B_STYLE";
+    public static final String PSTYLE = "HTML_P_STYLE";
+    public static final String ASTYLE = "HTML_A_STYLE";
+    public static final String USTYLE = "HTML_U_STYLE";
+    public static final String ISTYLE = "HTML_I_STYLE";
+    public static final String VIDEOlABEL = "HTML_VIDEO_LABEL";
+
+    /**
+     * 原始标签名与重写后标签名的对应关系，开始标签和结束标签都会被替换
+     */
+    private static final String[][] TAGS = {
+            {"ul", UNORDERED_LIST},
+            {"ol", ORDERED_LIST},
+            {"li", LIST_ITEM},
+            {"font", FONT},
+            {"div", DIV},
+            {"span", SPAN},
+            {"b", BSTYLE},
+            {"p", PSTYLE},
+            {"a", ASTYLE},
+            {"u", USTYLE},
+            {"i", ISTYLE},
+            {"video", VIDEOlABEL},
+    };
+
+    private static final String HTML_START = "<html>";
+    private static final String HTML_END = "</html>";
+    private static final String LINE_BREAK = "<br>";
+    private static final String DIV_START = "<div>";
+    private static final String DIV_END = "</div>";
+    private static final String IMG_START = "<img";
+    private static final String COMMENT_START = "<!--";
+    private static final String COMMENT_END = "-->";
+
+    private HtmlTagRewriter() {
+    }
+
+    /**
+     * 重写 html 中的标签
+     * <ul>
+     * <li>去掉只包裹了一个 img 标签的 div</li>
+     * <li>用 &lt;html&gt; 包裹整段 html，防止自定义标签解析出错</li>
+     * <li>把 ul、ol、li、font、div、span、b、p、a、u、i、video 重命名为自定义标签</li>
+     * <li>把文本中的换行替换为 &lt;br&gt;</li>
+     * </ul>
+     *
+     * @param html 原始 html
+     * @return 重写后的 html
+     */
+    public static String rewrite(String html) {
+        if (html == null) {
+            return null;
+        }
+
+        final int length = html.length();
+        // 自定义标签名比原标签名长，预留一部分空间，避免扩容
+        StringBuilder out = new StringBuilder(length + (length >> 2) + HTML_START.length() + HTML_END.length());
+        out.append(HTML_START);
+
+        int i = 0;
+        while (i < length) {
+            char c = html.charAt(i);
+            if (c == '\n') {
+                out.append(LINE_BREAK);
+                i++;
+            } else if (c != '<') {
+                out.append(c);
+                i++;
+            } else if (html.startsWith(COMMENT_START, i)) {
+                int end = html.indexOf(COMMENT_END, i + COMMENT_START.length());
+                end = end < 0 ? length : end + COMMENT_END.length();
+                out.append(html, i, end);
+                i = end;
+            } else {
+                int unwrapped = unwrapImageDiv(html, i, out);
+                i = unwrapped >= 0 ? unwrapped : rewriteTag(html, i, out);
+            }
+        }
+
+        out.append(HTML_END);
+        return out.toString();
+    }
+
+    /**
+     * 重写从 start（'&lt;' 所在位置）开始的一个标签，并原样拷贝标签剩余的内容
+     *
+     * @return 标签结束后的下一个位置
+     */
+    private static int rewriteTag(String html, int start, StringBuilder out) {
+        final int length = html.length();
+        int nameStart = start + 1;
+        boolean closing = nameStart < length && html.charAt(nameStart) == '/';
+        if (closing) {
+            nameStart++;
+        }
+        int nameEnd = nameStart;
+        while (nameEnd < length && isNameChar(html.charAt(nameEnd))) {
+            nameEnd++;
+        }
+
+        if (nameEnd == nameStart) {
+            // 不是标签，例如 "a < b"，当作普通文本
+            out.append('<');
+            return start + 1;
+        }
+
+        out.append(html, start, nameStart);
+        String replacement = findReplacement(html, nameStart, nameEnd - nameStart);
+        if (replacement != null) {
+            out.append(replacement);
+        } else {
+            out.append(html, nameStart, nameEnd);
+        }
+        return copyTagRemainder(html, nameEnd, out);
+    }
+
+    /**
+     * 原样拷贝标签名之后的属性部分，属性值中的 '&gt;' 不会结束标签
+     */
+    private static int copyTagRemainder(String html, int from, StringBuilder out) {
+        final int length = html.length();
+        char quote = 0;
+        int i = from;
+        while (i < length) {
+            char c = html.charAt(i++);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '>') {
+                break;
+            }
+        }
+        out.append(html, from, i);
+        return i;
+    }
+
+    /**
+     * 处理 &lt;div&gt;&lt;img ...&gt;&lt;/div&gt;，只保留中间的 img 标签
+     *
+     * @return 处理后的下一个位置，不匹配时返回 -1
+     */
+    private static int unwrapImageDiv(String html, int start, StringBuilder out) {
+        if (!html.regionMatches(true, start, DIV_START, 0, DIV_START.length())) {
+            return -1;
+        }
+        int imgStart = start + DIV_START.length();
+        int afterImg = imgStart + IMG_START.length();
+        if (!html.regionMatches(true, imgStart, IMG_START, 0, IMG_START.length())
+                || afterImg >= html.length()
+                || !Character.isWhitespace(html.charAt(afterImg))) {
+            return -1;
+        }
+        int imgEnd = html.indexOf('>', afterImg);
+        if (imgEnd < 0 || !html.regionMatches(true, imgEnd + 1, DIV_END, 0, DIV_END.length())) {
+            return -1;
+        }
+        out.append(html, imgStart, imgEnd + 1);
+        return imgEnd + 1 + DIV_END.length();
+    }
+
+    private static String findReplacement(String html, int nameStart, int nameLength) {
+        for (String[] tag : TAGS) {
+            String name = tag[0];
+            if (name.length() == nameLength && html.regionMatches(true, nameStart, name, 0, nameLength)) {
+                return tag[1];
+            }
+        }
+        return null;
+    }
+
+    private static boolean isNameChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '-' || c == '_' || c == ':' || c == '!' || c == '?';
+    }
+}
@@ -0,0 +1,281 @@
+package com.zhanyage.htmlparsecore;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 标签 style 属性中用到的样式：color、background-color、font-size、font-weight、text-decoration 和 text-align。
+ * <p>
+ * 一次扫描所有的声明，不使用正则。编辑器生成的 html 中大量重复相同的 style，解析结果按 style 字符串缓存，
+ * 重复的 style 只需要一次查找。实例不可变，可以在线程之间共享
+ */
+public final class InlineStyle {
+    public static final int NO_ALIGN = -1;
+
+    public static final int DECORATION_UNDERLINE = 1;
+    public static final int DECORATION_LINE_THROUGH = 1 << 1;
+
+    /**
+     * 缓存的 style 个数，超过后淘汰最久没有使用的
+     */
+    private static final int CACHE_SIZE = 256;
+
+    private static final Map<String, InlineStyle> sCache =
+            new LinkedHashMap<String, InlineStyle>(CACHE_SIZE, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, InlineStyle> eldest) {
+                    return size() > CACHE_SIZE;
+                }
+            };
+
+    /**
+     * 文字颜色，没有或者无法解析时为 {@link HtmlColors#NONE}
+     */
+    final long color;
+    /**
+     * 背景颜色，没有或者无法解析时为 {@link HtmlColors#NONE}
+     */
+    final long backgroundColor;
+    /**
+     * 文字大小（dp），px 和 pt 单位，没有时为 0
+     */
+    final int fontSize;
+    /**
+     * 相对文字大小的比例，em 和 % 单位，没有时为 0
+     */
+    final float fontScale;
+    final boolean bold;
+    /**
+     * {@link #DECORATION_UNDERLINE}、{@link #DECORATION_LINE_THROUGH} 的组合
+     */
+    final int textDecoration;
+    /**
+     * {@link StyleRun#ALIGN_NORMAL} 等对齐方式，没有时为 {@link #NO_ALIGN}
+     */
+    final int textAlign;
+
+    private InlineStyle(long color, long backgroundColor, int fontSize, float fontScale, boolean bold,
+                        int textDecoration, int textAlign) {
+        this.color = color;
+        this.backgroundColor = backgroundColor;
+        this.fontSize = fontSize;
+        this.fontScale = fontScale;
+        this.bold = bold;
+        this.textDecoration = textDecoration;
+        this.textAlign = textAlign;
+    }
+
+    /**
+     * 解析 style 属性，相同的 style 直接返回缓存的结果，可以在任意线程调用
+     *
+     * @param style style 属性的值
+     * @return 解析出的样式，style 为 null 时返回 null
+     */
+    public static InlineStyle parse(String style) {
+        if (style == null) {
+            return null;
+        }
+        InlineStyle cached;
+        synchronized (sCache) {
+            cached = sCache.get(style);
+        }
+        if (cached != null) {
+            return cached;
+        }
+        InlineStyle parsed = parseDeclarations(style);
+        synchronized (sCache) {
+            sCache.put(style, parsed);
+        }
+        return parsed;
+    }
+
+    /**
+     * 不经过缓存，直接解析所有的声明
+     */
+    static InlineStyle parseDeclarations(String style) {
+        long color = HtmlColors.NONE;
+        long backgroundColor = HtmlColors.NONE;
+        int fontSize = 0;
+        float fontScale = 0;
+        boolean bold = false;
+        int textDecoration = 0;
+        int textAlign = NO_ALIGN;
+
+        final int length = style.length();
+        int i = 0;
+        while (i < length) {
+            int end = style.indexOf(';', i);
+            if (end < 0) {
+                end = length;
+            }
+            int colon = style.indexOf(':', i);
+            if (colon > i && colon < end) {
+                int nameStart = HtmlColors.skipWhitespace(style, i, colon);
+                int nameEnd = trimEnd(style, nameStart, colon);
+                int valueStart = HtmlColors.skipWhitespace(style, colon + 1, end);
+                int valueEnd = trimEnd(style, valueStart, end);
+                if (valueStart < valueEnd) {
+                    if (isName(style, nameStart, nameEnd, "color")) {
+                        color = HtmlColors.parseCssColor(style.substring(valueStart, valueEnd));
+                    } else if (isName(style, nameStart, nameEnd, "background-color")
+                            || isName(style, nameStart, nameEnd, "background")) {
+                        backgroundColor = HtmlColors.parseCssColor(style.substring(valueStart, valueEnd));
+                    } else if (isName(style, nameStart, nameEnd, "font-size")) {
+                        fontSize = 0;
+                        fontScale = 0;
+                        float size = parseLength(style, valueStart, valueEnd);
+                        if (size > 0) {
+                            fontSize = Math.round(size);
+                        } else if (size < 0) {
+                            fontScale = -size;
+                        }
+                    } else if (isName(style, nameStart, nameEnd, "font-weight")) {
+                        bold = parseBold(style, valueStart, valueEnd);
+                    } else if (isName(style, nameStart, nameEnd, "text-decoration")
+                            || isName(style, nameStart, nameEnd, "text-decoration-line")) {
+                        textDecoration = parseDecoration(style, valueStart, valueEnd);
+                    } else if (isName(style, nameStart, nameEnd, "text-align")) {
+                        textAlign = parseAlign(style, valueStart, valueEnd);
+                    }
+                }
+            }
+            i = end + 1;
+        }
+        return new InlineStyle(color, backgroundColor, fontSize, fontScale, bold, textDecoration, textAlign);
+    }
+
+    public boolean hasColor() {
+        return color != HtmlColors.NONE;
+    }
+
+    /**
+     * @return ARGB 颜色值，只有 {@link #hasColor()} 时有效
+     */
+    public int getColor() {
+        return (int) color;
+    }
+
+    public boolean hasBackgroundColor() {
+        return backgroundColor != HtmlColors.NONE;
+    }
+
+    /**
+     * @return ARGB 颜色值，只有 {@link #hasBackgroundColor()} 时有效
+     */
+    public int getBackgroundColor() {
+        return (int) backgroundColor;
+    }
+
+    /**
+     * @return 文字大小（dp），px 按 dp 处理，pt 换算成 px，没有时为 0
+     */
+    public int getFontSize() {
+        return fontSize;
+    }
+
+    /**
+     * @return 相对当前文字大小的比例，1.2em 为 1.2，120% 为 1.2，没有时为 0
+     */
+    public float getFontScale() {
+        return fontScale;
+    }
+
+    public boolean isBold() {
+        return bold;
+    }
+
+    /**
+     * @return {@link #DECORATION_UNDERLINE}、{@link #DECORATION_LINE_THROUGH} 的组合，没有时为 0
+     */
+    public int getTextDecoration() {
+        return textDecoration;
+    }
+
+    /**
+     * @return {@link StyleRun#ALIGN_NORMAL} 等对齐方式，没有时为 {@link #NO_ALIGN}
+     */
+    public int getTextAlign() {
+        return textAlign;
+    }
+
+    private static boolean isName(String style, int start, int end, String name) {
+        return end - start == name.length() && style.regionMatches(true, start, name, 0, name.length());
+    }
+
+    /**
+     * 解析 "14px"、"10.5pt"、"1.2em"、"120%" 形式的大小
+     *
+     * @return px、pt 单位时返回 px，em、% 单位时返回比例的相反数，无法解析时返回 0
+     */
+    private static float parseLength(String style, int start, int end) {
+        int unit = start;
+        while (unit < end && (HtmlColors.isDigit(style.charAt(unit)) || style.charAt(unit) == '.')) {
+            unit++;
+        }
+        float n = HtmlColors.parseFloat(style, start, unit);
+        if (Float.isNaN(n) || n == 0) {
+            return 0;
+        }
+        if (isName(style, unit, end, "px")) {
+            return n;
+        } else if (isName(style, unit, end, "pt")) {
+            // 1pt = 1/72 英寸，1px = 1/96 英寸
+            return n * 4 / 3;
+        } else if (isName(style, unit, end, "em")) {
+            return -n;
+        } else if (isName(style, unit, end, "%")) {
+            return -n / 100;
+        }
+        return 0;
+    }
+
+    /**
+     * bold、bolder 和 600 以上的数值为粗体
+     */
+    private static boolean parseBold(String style, int start, int end) {
+        if (isName(style, start, end, "bold") || isName(style, start, end, "bolder")) {
+            return true;
+        }
+        float weight = HtmlColors.parseFloat(style, start, end);
+        return !Float.isNaN(weight) && weight >= 600;
+    }
+
+    /**
+     * text-decoration 可以同时包含多个值，例如 "underline line-through"
+     */
+    private static int parseDecoration(String style, int start, int end) {
+        int decoration = 0;
+        int i = start;
+        while (i < end) {
+            int wordEnd = i;
+            while (wordEnd < end && !Character.isWhitespace(style.charAt(wordEnd))) {
+                wordEnd++;
+            }
+            if (isName(style, i, wordEnd, "underline")) {
+                decoration |= DECORATION_UNDERLINE;
+            } else if (isName(style, i, wordEnd, "line-through")) {
+                decoration |= DECORATION_LINE_THROUGH;
+            }
+            i = HtmlColors.skipWhitespace(style, wordEnd, end);
+        }
+        return decoration;
+    }
+
+    private static int parseAlign(String style, int start, int end) {
+        if (isName(style, start, end, "start")) {
+            return StyleRun.ALIGN_NORMAL;
+        } else if (isName(style, start, end, "center")) {
+            return StyleRun.ALIGN_CENTER;
+        } else if (isName(style, start, end, "end")) {
+            return StyleRun.ALIGN_OPPOSITE;
+        }
+        return NO_ALIGN;
+    }
+
+    private static int trimEnd(String style, int start, int end) {
+        while (end > start && Character.isWhitespace(style.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+}
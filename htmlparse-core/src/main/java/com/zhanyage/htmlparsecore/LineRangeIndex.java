@@ -0,0 +1,98 @@
+package com.zhanyage.htmlparsecore;
+
+import java.util.Arrays;
+
+/**
+ * 按行建立的区间索引，htmlparselib 用它查找点击位置上的可点击 span。创建之后查询时不再分配内存。
+ * <p>
+ * 每一行记录与这一行相交的区间，并按照区间的开始位置排序，查询时直接定位到所在的行，
+ * 再在这一行中二分查找，不需要遍历所有的区间。区间所在的行由调用方根据排版结果计算
+ */
+public final class LineRangeIndex {
+    private final int[] starts;
+    private final int[] ends;
+    // 第 line 行的区间在 lineEntries 中的范围为 [lineOffsets[line], lineOffsets[line + 1])
+    private final int[] lineOffsets;
+    // 每一行中按开始位置排序的区间下标
+    private final int[] lineEntries;
+    // lineEntries 中从行首到当前位置的区间的最大结束位置
+    private final int[] maxEnds;
+
+    /**
+     * 传入的数组在创建后由索引持有，不能再修改
+     *
+     * @param lineCount  总行数
+     * @param starts     每个区间的开始位置
+     * @param ends       每个区间的结束位置
+     * @param firstLines 每个区间的第一行
+     * @param lastLines  每个区间的最后一行
+     */
+    public LineRangeIndex(int lineCount, int[] starts, int[] ends, int[] firstLines, int[] lastLines) {
+        this.starts = starts;
+        this.ends = ends;
+
+        int count = starts.length;
+        long[] order = new long[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = ((long) starts[i] << 32) | i;
+        }
+        // 按开始位置排序，依次放入每一行后，行内自然有序
+        Arrays.sort(order);
+
+        lineOffsets = new int[lineCount + 1];
+        for (int i = 0; i < count; i++) {
+            for (int line = firstLines[i]; line <= lastLines[i]; line++) {
+                lineOffsets[line + 1]++;
+            }
+        }
+        for (int line = 0; line < lineCount; line++) {
+            lineOffsets[line + 1] += lineOffsets[line];
+        }
+
+        lineEntries = new int[lineOffsets[lineCount]];
+        maxEnds = new int[lineEntries.length];
+        int[] positions = Arrays.copyOf(lineOffsets, lineCount);
+        for (long key : order) {
+            int i = (int) key;
+            for (int line = firstLines[i]; line <= lastLines[i]; line++) {
+                int position = positions[line]++;
+                lineEntries[position] = i;
+                maxEnds[position] = position == lineOffsets[line]
+                        ? ends[i] : Math.max(maxEnds[position - 1], ends[i]);
+            }
+        }
+    }
+
+    /**
+     * 查找第 line 行中包含 offset（两端都包含）的区间，多个区间重叠时返回下标最小的区间
+     *
+     * @return 区间的下标，没有时返回 -1
+     */
+    public int find(int line, int offset) {
+        if (line < 0 || line >= lineOffsets.length - 1) {
+            return -1;
+        }
+        int lineStart = lineOffsets[line];
+        // 二分查找第一个开始位置大于 offset 的区间
+        int low = lineStart;
+        int high = lineOffsets[line + 1];
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (starts[lineEntries[mid]] <= offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        // 往前找结束位置不小于 offset 的区间，之前的区间都结束得更早时停止
+        int found = -1;
+        for (int position = low - 1; position >= lineStart && maxEnds[position] >= offset; position--) {
+            int i = lineEntries[position];
+            if (ends[i] >= offset && (found < 0 || i < found)) {
+                found = i;
+            }
+        }
+        return found;
+    }
+}
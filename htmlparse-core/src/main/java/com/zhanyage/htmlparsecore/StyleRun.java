@@ -0,0 +1,81 @@
+package com.zhanyage.htmlparsecore;
+
+/**
+ * {@link HtmlDocument} 中样式区间的类型，以及各类型 value、extra、string 字段的含义。
+ * <p>
+ * 区间按结束标签出现的顺序记录，内层标签在前，和 Html.fromHtml 设置 span 的顺序一致
+ */
+public final class StyleRun {
+
+    public static final int BOLD = 1;
+    public static final int ITALIC = 2;
+    public static final int UNDERLINE = 3;
+    public static final int STRIKETHROUGH = 4;
+    public static final int MONOSPACE = 5;
+    /**
+     * 文字颜色，value 为 ARGB 颜色值
+     */
+    public static final int FOREGROUND_COLOR = 6;
+    /**
+     * 文字大小，value 为大小，extra 为单位 {@link #UNIT_DIP} 或 {@link #UNIT_FONT_STEP}
+     */
+    public static final int TEXT_SIZE = 7;
+    /**
+     * 相对文字大小，value 为 {@link Float#floatToIntBits(float)} 编码的比例
+     */
+    public static final int RELATIVE_SIZE = 8;
+    public static final int SUPERSCRIPT = 9;
+    public static final int SUBSCRIPT = 10;
+    /**
+     * 链接，string 为 href
+     */
+    public static final int LINK = 11;
+    /**
+     * 图片，占用一个 U+FFFC 字符。string 为 src，value、extra 为 width、height 属性，没有或者无法解析时为 -1
+     */
+    public static final int IMAGE = 12;
+    /**
+     * 视频，占用一个 U+FFFC 字符。string 为 poster，secondString 为视频的 src
+     */
+    public static final int VIDEO = 13;
+    /**
+     * 无序列表项，value 为列表的嵌套层数，从 1 开始
+     */
+    public static final int BULLET = 14;
+    /**
+     * 有序列表项，value 为序号，extra 为列表的嵌套层数
+     */
+    public static final int NUMBER = 15;
+    /**
+     * 段落对齐方式，value 为 {@link #ALIGN_NORMAL}、{@link #ALIGN_CENTER} 或 {@link #ALIGN_OPPOSITE}
+     */
+    public static final int ALIGNMENT = 16;
+    public static final int QUOTE = 17;
+    /**
+     * 背景颜色，value 为 ARGB 颜色值
+     */
+    public static final int BACKGROUND_COLOR = 18;
+
+    /**
+     * 大小的单位是 dp
+     */
+    public static final int UNIT_DIP = 0;
+    /**
+     * font 标签的 size 属性，大小为相对默认字体大小（dp）增加的值
+     */
+    public static final int UNIT_FONT_STEP = 1;
+
+    public static final int ALIGN_NORMAL = 0;
+    public static final int ALIGN_CENTER = 1;
+    public static final int ALIGN_OPPOSITE = 2;
+
+    private StyleRun() {
+    }
+
+    /**
+     * @return 是否是作用于整个段落的样式，这类区间的首尾需要落在段落边界上
+     */
+    public static boolean isParagraph(int type) {
+        return type == BULLET || type == NUMBER || type == ALIGNMENT || type == QUOTE;
+    }
+}
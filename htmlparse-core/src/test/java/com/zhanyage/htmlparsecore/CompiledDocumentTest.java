@@ -0,0 +1,153 @@
+package com.zhanyage.htmlparsecore;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class CompiledDocumentTest {
+    private static final String HTML = "<p style=\"color:#ff0000\">Hello <b>world</b></p>"
+            + "<ol start=\"2\"><li><a href=\"http://a.com\">a</a></li><li><a href=\"http://a.com\">b</a></li></ol>"
+            + "<img src=\"x.png\" width=\"10\"><video src=\"v.mp4\" poster=\"p.jpg\"></video>&eacute;中文";
+
+    // 头部各字段的偏移
+    private static final int TEXT_LENGTH_OFFSET = 8;
+    private static final int STRING_COUNT_OFFSET = 12;
+    private static final int RUN_COUNT_OFFSET = 16;
+    private static final int HEADER_SIZE = 20;
+
+    @Test
+    public void roundTrip() {
+        HtmlDocument document = HtmlParser.parse(HTML);
+        assertSameDocument(document, CompiledDocument.decode(CompiledDocument.encode(document)));
+        assertSameDocument(document, CompiledDocument.decode(CompiledDocument.compile(HTML)));
+    }
+
+    @Test
+    public void roundTripEmptyDocument() {
+        byte[] data = CompiledDocument.compile("");
+        assertEquals(HEADER_SIZE, data.length);
+        HtmlDocument decoded = CompiledDocument.decode(data);
+        assertEquals("", decoded.getText());
+        assertEquals(0, decoded.getRunCount());
+    }
+
+    @Test
+    public void repeatedStringsStoredOnce() {
+        byte[] data = CompiledDocument.compile(HTML);
+        // 两个链接的 href 相同，加上图片的 src、视频的 poster 和 src
+        assertEquals(4, ByteBuffer.wrap(data).getInt(STRING_COUNT_OFFSET));
+    }
+
+    @Test
+    public void decodeFromBufferPosition() {
+        byte[] data = CompiledDocument.compile(HTML);
+        byte[] padded = new byte[data.length + 3];
+        System.arraycopy(data, 0, padded, 3, data.length);
+        ByteBuffer buffer = ByteBuffer.wrap(padded);
+        buffer.position(3);
+        assertSameDocument(HtmlParser.parse(HTML), CompiledDocument.decode(buffer));
+        assertEquals(3, buffer.position());
+    }
+
+    @Test
+    public void rejectsBadMagic() {
+        byte[] data = CompiledDocument.compile(HTML);
+        data[0] = 0;
+        assertRejected(data);
+    }
+
+    @Test
+    public void rejectsUnsupportedVersionAndFlags() {
+        byte[] data = CompiledDocument.compile(HTML);
+        ByteBuffer.wrap(data).putShort(4, (short) (CompiledDocument.VERSION + 1));
+        assertRejected(data);
+
+        data = CompiledDocument.compile(HTML);
+        ByteBuffer.wrap(data).putShort(6, (short) 1);
+        assertRejected(data);
+    }
+
+    @Test
+    public void rejectsTruncatedData() {
+        byte[] data = CompiledDocument.compile(HTML);
+        for (int length = 0; length < data.length; length++) {
+            assertRejected(Arrays.copyOf(data, length));
+        }
+    }
+
+    @Test
+    public void rejectsNegativeCounts() {
+        for (int offset : new int[]{TEXT_LENGTH_OFFSET, STRING_COUNT_OFFSET, RUN_COUNT_OFFSET}) {
+            byte[] data = CompiledDocument.compile(HTML);
+            ByteBuffer.wrap(data).putInt(offset, -1);
+            assertRejected(data);
+        }
+    }
+
+    @Test
+    public void rejectsHugeCountsWithoutAllocating() {
+        // 损坏的头部不能导致按头部中的个数分配数组
+        for (int offset : new int[]{TEXT_LENGTH_OFFSET, STRING_COUNT_OFFSET, RUN_COUNT_OFFSET}) {
+            byte[] data = CompiledDocument.compile(HTML);
+            ByteBuffer.wrap(data).putInt(offset, Integer.MAX_VALUE);
+            assertRejected(data);
+        }
+    }
+
+    @Test
+    public void rejectsRunOutOfText() {
+        HtmlDocument document = new HtmlDocument.Builder()
+                .append("abc")
+                .addRun(StyleRun.BOLD, 1, 3, 0, 0)
+                .build();
+        byte[] data = CompiledDocument.encode(document);
+        int runOffset = HEADER_SIZE + 3 * 2;
+        // end 超过文本长度
+        ByteBuffer.wrap(data).putInt(runOffset + 8, 4);
+        assertRejected(data);
+
+        data = CompiledDocument.encode(document);
+        // start 大于 end
+        ByteBuffer.wrap(data).putInt(runOffset + 4, 3).putInt(runOffset + 8, 2);
+        assertRejected(data);
+    }
+
+    @Test
+    public void rejectsStringIndexOutOfTable() {
+        HtmlDocument document = new HtmlDocument.Builder()
+                .append("abc")
+                .addRun(StyleRun.LINK, 0, 3, 0, 0, "http://a.com", null)
+                .build();
+        byte[] data = CompiledDocument.encode(document);
+        int stringIndexOffset = data.length - 8;
+        ByteBuffer.wrap(data).putInt(stringIndexOffset, 1);
+        assertRejected(data);
+    }
+
+    private static void assertRejected(byte[] data) {
+        try {
+            CompiledDocument.decode(data);
+            fail("decoded corrupt data of " + data.length + " bytes");
+        } catch (IllegalArgumentException expected) {
+            // 预期的异常
+        }
+    }
+
+    private static void assertSameDocument(HtmlDocument expected, HtmlDocument actual) {
+        assertEquals(expected.getText(), actual.getText());
+        assertEquals(expected.getRunCount(), actual.getRunCount());
+        for (int i = 0; i < expected.getRunCount(); i++) {
+            assertEquals(expected.getRunType(i), actual.getRunType(i));
+            assertEquals(expected.getRunStart(i), actual.getRunStart(i));
+            assertEquals(expected.getRunEnd(i), actual.getRunEnd(i));
+            assertEquals(expected.getRunValue(i), actual.getRunValue(i));
+            assertEquals(expected.getRunExtra(i), actual.getRunExtra(i));
+            assertEquals(expected.getRunString(i), actual.getRunString(i));
+            assertEquals(expected.getRunSecondString(i), actual.getRunSecondString(i));
+        }
+    }
+}
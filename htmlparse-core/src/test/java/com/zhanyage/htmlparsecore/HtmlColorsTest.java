@@ -0,0 +1,89 @@
+package com.zhanyage.htmlparsecore;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class HtmlColorsTest {
+
+    @Test
+    public void hexColors() {
+        assertCss(0xFFFF0000L, "#f00");
+        assertCss(0xFF1A73E8L, "#1A73E8");
+        assertCss(0x80FF0000L, "#80ff0000");
+        assertCss(0xFF333333L, "  #333333  ");
+        assertCss(HtmlColors.NONE, "#12345");
+        assertCss(HtmlColors.NONE, "#ggg");
+    }
+
+    @Test
+    public void namedColors() {
+        assertCss(0xFFFF0000L, "red");
+        assertCss(0xFF2F4F4FL, "DarkSlateGray");
+        assertCss(0x00000000L, "transparent");
+        assertCss(HtmlColors.NONE, "inherit");
+    }
+
+    @Test
+    public void commaSeparatedFunctions() {
+        assertCss(0xFF333333L, "rgb(51, 51, 51)");
+        assertCss(0xFFFF6600L, "rgb(255,102,0)");
+        assertCss(0xD8000000L, "rgba(0, 0, 0, 0.85)");
+        assertCss(0x7FFF0000L, "rgba(100%, 0%, 0%, 50%)");
+        assertCss(0xFF336699L, "hsl(210, 50%, 40%)");
+        assertCss(0x7F336699L, "hsla(210deg, 50%, 40%, .5)");
+        // 缺少右括号时也可以解析
+        assertCss(0xFF333333L, "rgb(51, 51, 51");
+    }
+
+    @Test
+    public void spaceSeparatedFunctions() {
+        assertCss(0xFFFF0000L, "rgb(255 0 0)");
+        assertCss(0x7FFF0000L, "rgb(255 0 0 / 50%)");
+        assertCss(0x7FFF0000L, "rgba(255 0 0/0.5)");
+        assertCss(0xFF336699L, "hsl(210deg 50% 40%)");
+        assertCss(0x3F336699L, "hsl(210 50% 40% / 0.25)");
+    }
+
+    @Test
+    public void malformedFunctions() {
+        assertCss(HtmlColors.NONE, "rgb(51, 51,");
+        assertCss(HtmlColors.NONE, "rgb(1, 2)");
+        assertCss(HtmlColors.NONE, "rgba(1, 2, 3, 4, 5)");
+        // 逗号和空格不能混用
+        assertCss(HtmlColors.NONE, "rgb(255 0, 0)");
+        assertCss(HtmlColors.NONE, "rgb(255, 0 0)");
+        assertCss(HtmlColors.NONE, "rgb(255, 0, 0 / 0.5)");
+        // 空格分隔时透明度前面必须是 '/'
+        assertCss(HtmlColors.NONE, "rgb(255 0 0 0.5)");
+        assertCss(HtmlColors.NONE, "rgb(255 0 / 0 0.5)");
+        assertCss(HtmlColors.NONE, "rgb(255 0 0 /)");
+        assertCss(HtmlColors.NONE, "rgb(255 0 0) x");
+        assertCss(HtmlColors.NONE, "calc(1)");
+    }
+
+    @Test
+    public void fontColors() {
+        assertEquals(0xFFFF0000L, HtmlColors.parseFontColor("#ff0000"));
+        assertEquals(0xFF888888L, HtmlColors.parseFontColor("gray"));
+        assertEquals(HtmlColors.NONE, HtmlColors.parseFontColor("#fff"));
+        assertEquals(HtmlColors.NONE, HtmlColors.parseFontColor(null));
+    }
+
+    @Test
+    public void cachedResultsMatchUncached() {
+        // 槽位个数的数倍，保证有冲突和覆盖
+        for (int round = 0; round < 2; round++) {
+            for (int i = 0; i < 1000; i++) {
+                String color = "rgb(" + (i % 256) + " " + (i / 256) + " 0)";
+                assertEquals(color, HtmlColors.parseCssColorUncached(color), HtmlColors.parseCssColor(color));
+            }
+        }
+    }
+
+    private static void assertCss(long expected, String value) {
+        assertEquals(value, expected, HtmlColors.parseCssColorUncached(value));
+        assertEquals(value, expected, HtmlColors.parseCssColor(value));
+        assertEquals(value, expected, HtmlColors.parseCssColor(value));
+    }
+}
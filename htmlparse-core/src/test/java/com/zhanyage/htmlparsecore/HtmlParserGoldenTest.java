@@ -0,0 +1,132 @@
+package com.zhanyage.htmlparsecore;
+
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 和原来 HtmlTagRewriter + Html.fromHtml + HtmlTagHandler 的解析结果对比。
+ * <p>
+ * fromhtml_golden.txt 中每一段是一个用例：html 为输入，text 为 Html.fromHtml 得到的文本，
+ * run 为得到的 span 按 {@link StyleRun} 类型整理后的结果，格式为 "类型 开始 结束 值"。
+ * 换行等字符按 Java 字符串的方式转义。span 的顺序和 LeadingMarginSpan 等只影响绘制位置的 span 不参与比较。
+ * <p>
+ * 列表项、段落省略结束标签，以及 script 的内容、\r\n、"x &lt;3" 等有意和原来不一致的情况放在 {@link HtmlParserTest} 中
+ */
+public class HtmlParserGoldenTest {
+    private static final String[] TYPE_NAMES = {null, "BOLD", "ITALIC", "UNDERLINE", "STRIKETHROUGH",
+            "MONOSPACE", "FOREGROUND_COLOR", "TEXT_SIZE", "RELATIVE_SIZE", "SUPERSCRIPT", "SUBSCRIPT",
+            "LINK", "IMAGE", "VIDEO", "BULLET", "NUMBER", "ALIGNMENT", "QUOTE", "BACKGROUND_COLOR"};
+
+    @Test
+    public void matchesFromHtml() throws IOException {
+        List<String> lines = readGolden();
+        int cases = 0;
+        int i = 0;
+        while (i < lines.size()) {
+            String line = lines.get(i++);
+            if (line.isEmpty()) {
+                continue;
+            }
+            assertTrue(line, line.startsWith("html: "));
+            String html = unescape(line.substring("html: ".length()));
+            String text = unescape(lines.get(i++).substring("text: ".length()));
+            List<String> runs = new ArrayList<>();
+            while (i < lines.size() && lines.get(i).startsWith("run: ")) {
+                runs.add(lines.get(i++).substring("run: ".length()));
+            }
+
+            HtmlDocument document = HtmlParser.parse(html);
+            assertEquals(html, text, document.getText());
+            assertEquals(html, runs, describeRuns(document));
+            cases++;
+        }
+        assertTrue(cases > 0);
+    }
+
+    private List<String> readGolden() throws IOException {
+        InputStream in = HtmlParserGoldenTest.class.getResourceAsStream("fromhtml_golden.txt");
+        assertNotNull(in);
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * 把文档中的区间整理成 "类型 开始 结束 值" 的形式并排序
+     */
+    static List<String> describeRuns(HtmlDocument document) {
+        List<String> runs = new ArrayList<>();
+        for (int i = 0; i < document.getRunCount(); i++) {
+            int type = document.getRunType(i);
+            int value = document.getRunValue(i);
+            StringBuilder run = new StringBuilder(TYPE_NAMES[type])
+                    .append(' ').append(document.getRunStart(i))
+                    .append(' ').append(document.getRunEnd(i));
+            switch (type) {
+                case StyleRun.FOREGROUND_COLOR:
+                    // 和 SpanAdapter 一致，文字颜色不透明
+                    run.append(' ').append(hex(value | 0xFF000000));
+                    break;
+                case StyleRun.BACKGROUND_COLOR:
+                    run.append(' ').append(hex(value));
+                    break;
+                case StyleRun.RELATIVE_SIZE:
+                    run.append(' ').append(Float.intBitsToFloat(value));
+                    break;
+                case StyleRun.LINK:
+                    run.append(' ').append(document.getRunString(i));
+                    break;
+                case StyleRun.BULLET:
+                case StyleRun.NUMBER:
+                case StyleRun.ALIGNMENT:
+                    run.append(' ').append(value);
+                    break;
+                default:
+                    break;
+            }
+            runs.add(run.toString());
+        }
+        Collections.sort(runs);
+        return runs;
+    }
+
+    private static String hex(int color) {
+        return String.format(Locale.US, "%08x", color);
+    }
+
+    private static String unescape(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' && i + 1 < s.length()) {
+                c = s.charAt(++i);
+                if (c == 'n') {
+                    c = '\n';
+                } else if (c == 'r') {
+                    c = '\r';
+                } else if (c == 't') {
+                    c = '\t';
+                }
+            }
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,256 @@
+package com.zhanyage.htmlparsecore;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class HtmlParserTest {
+
+    @Test
+    public void emptyInput() {
+        assertEquals("", HtmlParser.parse(null).getText());
+        assertEquals("", HtmlParser.parse("").getText());
+        assertEquals(0, HtmlParser.parse("").getRunCount());
+    }
+
+    @Test
+    public void unclosedListItemsInOrderedList() {
+        HtmlDocument document = HtmlParser.parse("<ol><li>a<li>b<li>c</ol>");
+        assertEquals("a\nb\nc\n", document.getText());
+        assertRuns(document, "NUMBER 0 2 1", "NUMBER 2 4 2", "NUMBER 4 6 3");
+        assertSameDocument("<ol><li>a</li><li>b</li><li>c</li></ol>", "<ol><li>a<li>b<li>c</ol>");
+    }
+
+    @Test
+    public void unclosedListItemsInUnorderedList() {
+        HtmlDocument document = HtmlParser.parse("<ul><li>a<li>b</ul>");
+        assertEquals("a\nb\n", document.getText());
+        assertRuns(document, "BULLET 0 2 1", "BULLET 2 4 1");
+        // 列表结束时没有结束标签
+        assertSameDocument("<ul><li>a</li><li>b</li></ul>", "<ul><li>a<li>b");
+    }
+
+    @Test
+    public void listItemDoesNotCloseOuterListItem() {
+        assertSameDocument("<ul><li>a<ul><li>b</li><li>c</li></ul></li><li>d</li></ul>",
+                "<ul><li>a<ul><li>b<li>c</ul><li>d</ul>");
+        assertSameDocument("<ol><li>a<ol><li>b</li></ol></li><li>c</li></ol>",
+                "<ol><li>a<ol><li>b</ol><li>c</ol>");
+    }
+
+    @Test
+    public void listItemClosesOpenInlineTags() {
+        assertSameDocument("<ul><li><b>a</b></li><li>b</li></ul>", "<ul><li><b>a<li>b</ul>");
+    }
+
+    @Test
+    public void nestedListNumbering() {
+        HtmlDocument document = HtmlParser.parse("<ol start=\"3\"><li>a<ol><li>b</li></ol></li><li>c</li></ol>");
+        assertEquals("a\nb\nc\n", document.getText());
+        assertRuns(document, "NUMBER 0 4 3", "NUMBER 2 4 1", "NUMBER 4 6 4");
+        for (int i = 0; i < document.getRunCount(); i++) {
+            // extra 为嵌套层数
+            int expectedDepth = document.getRunStart(i) == 2 ? 2 : 1;
+            assertEquals(expectedDepth, document.getRunExtra(i));
+        }
+    }
+
+    @Test
+    public void listItemOutsideListHasNoMarker() {
+        HtmlDocument document = HtmlParser.parse("<li>a</li>b");
+        assertEquals("ab", document.getText());
+        assertRuns(document);
+    }
+
+    @Test
+    public void paragraphClosedByNextParagraph() {
+        assertSameDocument("<p>one</p><p>two</p>", "<p>one<p>two");
+        assertSameDocument("<p><b>one</b></p><p>two</p>", "<p><b>one<p>two");
+    }
+
+    @Test
+    public void paragraphClosedByBlocks() {
+        assertSameDocument("<p>a</p><ul><li>x</li></ul>", "<p>a<ul><li>x</ul>");
+        assertSameDocument("<p>a</p><div>b</div>", "<p>a<div>b</div>");
+        assertSameDocument("<p>a</p><h1>b</h1>", "<p>a<h1>b</h1>");
+        assertSameDocument("<p>a</p><blockquote>b</blockquote>", "<p>a<blockquote>b</blockquote>");
+        assertSameDocument("<p style=\"color:red\">a</p>b", "<p style=\"color:red\">a<hr>b");
+    }
+
+    @Test
+    public void paragraphNotClosedByInlineTags() {
+        HtmlDocument document = HtmlParser.parse("<p style=\"color:red\">a<b>b</b><br>c<img src=\"x\">d</p>");
+        assertEquals("ab\nc\uFFFCd\n", document.getText());
+        assertRuns(document, "BOLD 1 2", "FOREGROUND_COLOR 0 6 ffff0000", "IMAGE 4 5");
+    }
+
+    @Test
+    public void paragraphInsideTableCellNotClosedByBlock() {
+        HtmlDocument document = HtmlParser.parse("<p style=\"color:red\">a<td><div>b</div></td>c</p>");
+        assertEquals("a\nb\nc\n", document.getText());
+        assertRuns(document, "FOREGROUND_COLOR 0 5 ffff0000");
+    }
+
+    @Test
+    public void definitionListItemsCloseEachOther() {
+        assertSameDocument("<dl><dt><b>t</b></dt><dd><i>d</i></dd><dt>u</dt></dl>",
+                "<dl><dt><b>t<dd><i>d<dt>u</dl>");
+    }
+
+    @Test
+    public void optionClosesPreviousOption() {
+        assertSameDocument("<select><option><b>a</b></option><option>b</option></select>",
+                "<select><option><b>a<option>b</select>");
+    }
+
+    @Test
+    public void nestedInlineStyles() {
+        HtmlDocument document = HtmlParser.parse("<b>a<i>b<u>c</u></i></b><s>d</s>");
+        assertEquals("abcd", document.getText());
+        assertRuns(document, "BOLD 0 3", "ITALIC 1 3", "STRIKETHROUGH 3 4", "UNDERLINE 2 3");
+    }
+
+    @Test
+    public void innerRunsRecordedFirst() {
+        HtmlDocument document = HtmlParser.parse("<b><i>x</i></b>");
+        assertEquals(StyleRun.ITALIC, document.getRunType(0));
+        assertEquals(StyleRun.BOLD, document.getRunType(1));
+    }
+
+    @Test
+    public void endTagClosesTagsOpenedAfterIt() {
+        HtmlDocument document = HtmlParser.parse("<b><i>a</b>b</i>");
+        assertEquals("ab", document.getText());
+        assertRuns(document, "BOLD 0 1", "ITALIC 0 1");
+    }
+
+    @Test
+    public void namedAndNumericEntities() {
+        assertText("a & b <c> \"d\" 'e'", "a &amp; b &lt;c&gt; &quot;d&quot; &apos;e&apos;");
+        assertText("AB€ é", "&#x41;&#66;&euro;&nbsp;&eacute;");
+        assertText("😀", "&#x1F600;");
+    }
+
+    @Test
+    public void invalidEntitiesKeptAsText() {
+        assertText("&bogus; &#; &#xZZ; &#0; & x", "&bogus; &#; &#xZZ; &#0; & x");
+        assertText("&lt3 &ampx", "&lt3 &ampx");
+    }
+
+    @Test
+    public void legacyEntitiesWithoutSemicolon() {
+        assertText("a & b © 2024 <", "a &amp b &copy 2024 &lt");
+    }
+
+    @Test
+    public void entitiesInAttributes() {
+        HtmlDocument document = HtmlParser.parse("<a href=\"?a=1&amp;b=2&copy=3&lt;\">x</a>");
+        assertEquals("?a=1&b=2&copy=3<", document.getRunString(0));
+    }
+
+    @Test
+    public void whitespaceCollapsed() {
+        assertText("a b c ", "  a   b   c  ");
+        assertText("a b", "a <b> </b> b");
+    }
+
+    @Test
+    public void tabKeptLikeFromHtml() {
+        assertText("a\tb", "a\tb");
+    }
+
+    @Test
+    public void newlinesBecomeLineBreaks() {
+        assertText("a\nb\n\nc", "a\nb\n\nc");
+        assertText("a\nb", "a\r\nb");
+    }
+
+    @Test
+    public void bareCarriageReturnCollapsed() {
+        assertText("a b", "a\rb");
+        assertText("a b", "a \r b");
+        assertText("a b c", "a\r\r\rb\r \rc");
+    }
+
+    @Test
+    public void lessThanWithoutTagKeptAsText() {
+        assertText("a < b and c > d", "a < b and c > d");
+        assertText("x <3 y", "x <3 y");
+        assertText("a <", "a <");
+    }
+
+    @Test
+    public void strayEndTagsIgnored() {
+        HtmlDocument document = HtmlParser.parse("</b></li></p>a</ul>b");
+        assertEquals("ab", document.getText());
+        assertRuns(document);
+    }
+
+    @Test
+    public void unclosedTagsClosedAtEnd() {
+        HtmlDocument document = HtmlParser.parse("<p>open <b>bold");
+        assertEquals("open bold\n", document.getText());
+        assertRuns(document, "BOLD 5 9");
+    }
+
+    @Test
+    public void truncatedTagAtEnd() {
+        HtmlDocument document = HtmlParser.parse("a <b class=\"x");
+        assertEquals("a ", document.getText());
+    }
+
+    @Test
+    public void rawTextAndCommentsDropped() {
+        assertText("ab", "<script>var s = '<b>';</script>a<style>p{}</style><title>t</title>b");
+        assertText("visible", "<!-- comment -->visible<!-- unterminated");
+        assertText("a", "<!DOCTYPE html><?xml version=\"1.0\"?>a");
+    }
+
+    @Test
+    public void unknownTagsKeepText() {
+        assertText("inside tag", "<unknown attr=\"1\">inside</unknown> tag");
+    }
+
+    @Test
+    public void imageInsideDivUnwrapped() {
+        HtmlDocument document = HtmlParser.parse("a<div><img src=\"x.png\" width=\"10\" height=\"20\"></div>b");
+        assertEquals("a\uFFFCb", document.getText());
+        assertEquals(StyleRun.IMAGE, document.getRunType(0));
+        assertEquals("x.png", document.getRunString(0));
+        assertEquals(10, document.getRunValue(0));
+        assertEquals(20, document.getRunExtra(0));
+    }
+
+    @Test
+    public void countsStartTagsInSamePass() {
+        // 被去掉的 div、script 本身都算，注释、script 中的内容和结束标签不算
+        HtmlDocument document = HtmlParser.parse(
+                "<div><img src=\"x\"></div><p>a <!-- <b> --><script>'<i>'</script><br/>b</p></b> a < b");
+        assertEquals(5, document.getTagCount());
+        assertEquals(0, HtmlParser.parse("").getTagCount());
+    }
+
+    private static void assertText(String expected, String html) {
+        assertEquals(html, expected, HtmlParser.parse(html).getText());
+    }
+
+    private static void assertRuns(HtmlDocument document, String... expected) {
+        List<String> runs = Arrays.asList(expected);
+        Collections.sort(runs);
+        assertEquals(runs, HtmlParserGoldenTest.describeRuns(document));
+    }
+
+    /**
+     * 省略结束标签的 html 和补全后的 html 解析结果相同
+     */
+    private static void assertSameDocument(String closed, String implied) {
+        HtmlDocument expected = HtmlParser.parse(closed);
+        HtmlDocument actual = HtmlParser.parse(implied);
+        assertEquals(implied, expected.getText(), actual.getText());
+        assertEquals(implied, HtmlParserGoldenTest.describeRuns(expected), HtmlParserGoldenTest.describeRuns(actual));
+    }
+}
@@ -0,0 +1,130 @@
+package com.zhanyage.htmlparsecore;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class InlineStyleTest {
+
+    @Test
+    public void fontSizeInPixelsAndPoints() {
+        assertEquals(14, InlineStyle.parseDeclarations("font-size: 14px").getFontSize());
+        // 1pt = 4/3 px
+        assertEquals(14, InlineStyle.parseDeclarations("font-size: 10.5pt").getFontSize());
+        assertEquals(16, InlineStyle.parseDeclarations("FONT-SIZE:12PT").getFontSize());
+        assertEquals(0f, InlineStyle.parseDeclarations("font-size: 14px").getFontScale(), 0);
+    }
+
+    @Test
+    public void relativeFontSize() {
+        InlineStyle style = InlineStyle.parseDeclarations("font-size: 1.2em");
+        assertEquals(1.2f, style.getFontScale(), 1e-6f);
+        assertEquals(0, style.getFontSize());
+        assertEquals(0.8f, InlineStyle.parseDeclarations("font-size: 80%").getFontScale(), 1e-6f);
+    }
+
+    @Test
+    public void zeroAndUnitlessSizesRejected() {
+        for (String size : new String[]{"0px", "0", "14", "0.0em", "14rem", "-2px", "px", "large"}) {
+            InlineStyle style = InlineStyle.parseDeclarations("font-size: " + size);
+            assertEquals(size, 0, style.getFontSize());
+            assertEquals(size, 0f, style.getFontScale(), 0);
+        }
+    }
+
+    @Test
+    public void fontWeight() {
+        assertTrue(InlineStyle.parseDeclarations("font-weight: bold").isBold());
+        assertTrue(InlineStyle.parseDeclarations("font-weight: Bolder").isBold());
+        assertTrue(InlineStyle.parseDeclarations("font-weight: 600").isBold());
+        assertTrue(InlineStyle.parseDeclarations("font-weight: 700").isBold());
+        assertFalse(InlineStyle.parseDeclarations("font-weight: 500").isBold());
+        assertFalse(InlineStyle.parseDeclarations("font-weight: normal").isBold());
+    }
+
+    @Test
+    public void textDecorationWithSeveralValues() {
+        assertEquals(InlineStyle.DECORATION_UNDERLINE,
+                InlineStyle.parseDeclarations("text-decoration: underline").getTextDecoration());
+        assertEquals(InlineStyle.DECORATION_UNDERLINE | InlineStyle.DECORATION_LINE_THROUGH,
+                InlineStyle.parseDeclarations("text-decoration: underline  line-through").getTextDecoration());
+        assertEquals(InlineStyle.DECORATION_LINE_THROUGH,
+                InlineStyle.parseDeclarations("text-decoration-line: line-through").getTextDecoration());
+        assertEquals(InlineStyle.DECORATION_UNDERLINE,
+                InlineStyle.parseDeclarations("text-decoration: underline dotted red").getTextDecoration());
+        assertEquals(0, InlineStyle.parseDeclarations("text-decoration: none").getTextDecoration());
+    }
+
+    @Test
+    public void backgroundAndBackgroundColor() {
+        InlineStyle style = InlineStyle.parseDeclarations("background-color: #ffff00");
+        assertTrue(style.hasBackgroundColor());
+        assertEquals(0xFFFFFF00, style.getBackgroundColor());
+
+        style = InlineStyle.parseDeclarations("background: rgb(255, 0, 0)");
+        assertTrue(style.hasBackgroundColor());
+        assertEquals(0xFFFF0000, style.getBackgroundColor());
+        assertFalse(style.hasColor());
+
+        // 简写中除了颜色还有其他值时无法解析
+        assertFalse(InlineStyle.parseDeclarations("background: url(a.png) red").hasBackgroundColor());
+    }
+
+    @Test
+    public void textAlign() {
+        assertEquals(StyleRun.ALIGN_NORMAL, InlineStyle.parseDeclarations("text-align: start").getTextAlign());
+        assertEquals(StyleRun.ALIGN_CENTER, InlineStyle.parseDeclarations("text-align:center").getTextAlign());
+        assertEquals(StyleRun.ALIGN_OPPOSITE, InlineStyle.parseDeclarations("text-align: END").getTextAlign());
+        for (String align : new String[]{"left", "right", "justify", "inherit"}) {
+            assertEquals(align, InlineStyle.NO_ALIGN,
+                    InlineStyle.parseDeclarations("text-align: " + align).getTextAlign());
+        }
+    }
+
+    @Test
+    public void declarationsWithoutColonIgnored() {
+        InlineStyle style = InlineStyle.parseDeclarations("color red; :blue; font-weight: bold;;  ; color:");
+        assertFalse(style.hasColor());
+        assertTrue(style.isBold());
+    }
+
+    @Test
+    public void lastDeclarationWins() {
+        InlineStyle style = InlineStyle.parseDeclarations("color: red; font-size: 2em; color: #0000ff; font-size: 12px");
+        assertEquals(0xFF0000FF, style.getColor());
+        assertEquals(12, style.getFontSize());
+        assertEquals(0f, style.getFontScale(), 0);
+        // 无法解析的值同样覆盖前面的声明
+        assertFalse(InlineStyle.parseDeclarations("color: red; color: inherit").hasColor());
+    }
+
+    @Test
+    public void unknownPropertiesIgnored() {
+        InlineStyle style = InlineStyle.parseDeclarations("margin: 0px; padding: 0px; line-height: 1.5");
+        assertFalse(style.hasColor());
+        assertFalse(style.hasBackgroundColor());
+        assertEquals(0, style.getFontSize());
+        assertFalse(style.isBold());
+        assertEquals(0, style.getTextDecoration());
+        assertEquals(InlineStyle.NO_ALIGN, style.getTextAlign());
+    }
+
+    @Test
+    public void cachedStyleMatchesUncached() {
+        String value = "color: rgb(51, 51, 51); font-size: 10.5pt; font-weight: 700; text-align: center";
+        InlineStyle cached = InlineStyle.parse(value);
+        assertSame(cached, InlineStyle.parse(value));
+        assertSame(cached, InlineStyle.parse(value));
+
+        InlineStyle uncached = InlineStyle.parseDeclarations(value);
+        assertEquals(uncached.getColor(), cached.getColor());
+        assertEquals(uncached.getFontSize(), cached.getFontSize());
+        assertEquals(uncached.isBold(), cached.isBold());
+        assertEquals(uncached.getTextAlign(), cached.getTextAlign());
+        assertNull(InlineStyle.parse(null));
+    }
+}
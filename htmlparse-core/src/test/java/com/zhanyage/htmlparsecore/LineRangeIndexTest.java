@@ -0,0 +1,89 @@
+package com.zhanyage.htmlparsecore;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class LineRangeIndexTest {
+
+    @Test
+    public void emptyIndex() {
+        LineRangeIndex index = new LineRangeIndex(3, new int[0], new int[0], new int[0], new int[0]);
+        assertEquals(-1, index.find(0, 0));
+        assertEquals(-1, index.find(2, 10));
+    }
+
+    @Test
+    public void findsRangeIncludingBothEnds() {
+        LineRangeIndex index = index(1, new int[]{2, 10}, new int[]{5, 12}, new int[]{0, 0}, new int[]{0, 0});
+        assertEquals(-1, index.find(0, 1));
+        assertEquals(0, index.find(0, 2));
+        assertEquals(0, index.find(0, 5));
+        assertEquals(-1, index.find(0, 6));
+        assertEquals(1, index.find(0, 12));
+    }
+
+    @Test
+    public void rangeSpanningLines() {
+        // 每行 10 个字符，区间 [8, 25] 跨越 0~2 行
+        LineRangeIndex index = index(3, new int[]{8}, new int[]{25}, new int[]{0}, new int[]{2});
+        assertEquals(0, index.find(0, 9));
+        assertEquals(0, index.find(1, 15));
+        assertEquals(0, index.find(2, 25));
+        assertEquals(-1, index.find(2, 26));
+    }
+
+    @Test
+    public void overlappingRangesReturnLowestIndex() {
+        LineRangeIndex index = index(1, new int[]{5, 0, 3}, new int[]{9, 20, 6}, new int[]{0, 0, 0}, new int[]{0, 0, 0});
+        assertEquals(1, index.find(0, 4));
+        assertEquals(0, index.find(0, 7));
+        assertEquals(1, index.find(0, 15));
+    }
+
+    @Test
+    public void lineOutOfRange() {
+        LineRangeIndex index = index(1, new int[]{0}, new int[]{3}, new int[]{0}, new int[]{0});
+        assertEquals(-1, index.find(-1, 1));
+        assertEquals(-1, index.find(1, 1));
+    }
+
+    @Test
+    public void matchesLinearScan() {
+        Random random = new Random(7);
+        final int charsPerLine = 16;
+        final int length = 2000;
+        int count = 300;
+        int[] starts = new int[count];
+        int[] ends = new int[count];
+        int[] firstLines = new int[count];
+        int[] lastLines = new int[count];
+        for (int i = 0; i < count; i++) {
+            starts[i] = random.nextInt(length - 40);
+            ends[i] = starts[i] + random.nextInt(40);
+            int first = starts[i] / charsPerLine;
+            if (first > 0 && starts[i] % charsPerLine == 0) {
+                first--;
+            }
+            firstLines[i] = first;
+            lastLines[i] = ends[i] / charsPerLine;
+        }
+        LineRangeIndex index = new LineRangeIndex(length / charsPerLine + 1, starts, ends, firstLines, lastLines);
+        for (int offset = 0; offset < length; offset++) {
+            int expected = -1;
+            for (int i = 0; i < count; i++) {
+                if (starts[i] <= offset && ends[i] >= offset) {
+                    expected = i;
+                    break;
+                }
+            }
+            assertEquals("offset " + offset, expected, index.find(offset / charsPerLine, offset));
+        }
+    }
+
+    private static LineRangeIndex index(int lineCount, int[] starts, int[] ends, int[] firstLines, int[] lastLines) {
+        return new LineRangeIndex(lineCount, starts, ends, firstLines, lastLines);
+    }
+}
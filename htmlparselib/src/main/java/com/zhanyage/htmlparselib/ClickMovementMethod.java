@@ -1,7 +1,7 @@
 package com.zhanyage.htmlparselib;
 
+import android.text.Editable;
 import android.text.Layout;
-import android.text.Spannable;
 import android.text.style.ClickableSpan;
 import android.util.Log;
 import android.view.MotionEvent;
@@ -17,6 +17,7 @@ import android.widget.TextView;
 public class ClickMovementMethod implements View.OnTouchListener {
     private LongClickCallback longClickCallback;
     private boolean isEventStart;
+    private ClickableSpanIndex spanIndex;
 
     public static ClickMovementMethod newInstance() {
         return new ClickMovementMethod();
@@ -24,42 +25,59 @@ public class ClickMovementMethod implements View.OnTouchListener {
 
     @Override
     public boolean onTouch(final View v, MotionEvent event) {
+        int action = event.getAction();
+        if (action != MotionEvent.ACTION_DOWN && action != MotionEvent.ACTION_UP
+                && action != MotionEvent.ACTION_CANCEL) {
+            return false;
+        }
+
         if (longClickCallback == null) {
             longClickCallback = new LongClickCallback(v);
         }
 
         TextView widget = (TextView) v;
         // MovementMethod设为空，防止消费长按事件
-        widget.setMovementMethod(null);
+        if (widget.getMovementMethod() != null) {
+            widget.setMovementMethod(null);
+        }
+        Layout layout = widget.getLayout();
+        if (layout == null) {
+            return false;
+        }
+
+        int x = (int) event.getX();
+        int y = (int) event.getY();
+        x -= widget.getTotalPaddingLeft();
+        y -= widget.getTotalPaddingTop();
+        x += widget.getScrollX();
+        y += widget.getScrollY();
+        int line = layout.getLineForVertical(y);
+        int off = layout.getOffsetForHorizontal(line, x);
+
+        // 直接读取 textView 中的文本，文本和 layout 没有变化时复用之前建立的索引；
+        // 可编辑的文本随时会变化，每次直接查询
         CharSequence text = widget.getText();
-        Spannable spannable = Spannable.Factory.getInstance().newSpannable(text);
-        int action = event.getAction();
-        if (action == MotionEvent.ACTION_DOWN || action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) {
-            int x = (int) event.getX();
-            int y = (int) event.getY();
-            if (widget == null) {
-                return false;
+        ClickableSpan link;
+        if (text instanceof Editable) {
+            ClickableSpan[] links = ((Editable) text).getSpans(off, off, ClickableSpan.class);
+            link = links.length != 0 ? links[0] : null;
+        } else {
+            if (spanIndex == null || !spanIndex.isFor(text, layout)) {
+                spanIndex = new ClickableSpanIndex(text, layout);
             }
-            x -= widget.getTotalPaddingLeft();
-            y -= widget.getTotalPaddingTop();
-            x += widget.getScrollX();
-            y += widget.getScrollY();
-            Layout layout = widget.getLayout();
-            int line = layout.getLineForVertical(y);
-            int off = layout.getOffsetForHorizontal(line, x);
-            ClickableSpan[] link = spannable.getSpans(off, off, ClickableSpan.class);
-            if (link.length != 0) {
-                if (action == MotionEvent.ACTION_DOWN) {
-                    isEventStart = true;
-                    v.postDelayed(longClickCallback, ViewConfiguration.getLongPressTimeout());
-                } else if (isEventStart) {
-                    v.removeCallbacks(longClickCallback);
-                    if (action == MotionEvent.ACTION_UP) {
-                        onSpanClick(link[0], widget);
-                    }
+            link = spanIndex.find(line, off);
+        }
+        if (link != null) {
+            if (action == MotionEvent.ACTION_DOWN) {
+                isEventStart = true;
+                v.postDelayed(longClickCallback, ViewConfiguration.getLongPressTimeout());
+            } else if (isEventStart) {
+                v.removeCallbacks(longClickCallback);
+                if (action == MotionEvent.ACTION_UP) {
+                    onSpanClick(link, widget);
                 }
-                return true;
             }
+            return true;
         }
 
         return false;
@@ -0,0 +1,67 @@
+package com.zhanyage.htmlparselib;
+
+import android.text.Layout;
+import android.text.Spanned;
+import android.text.style.ClickableSpan;
+
+import com.zhanyage.htmlparsecore.LineRangeIndex;
+
+/**
+ * 按行建立的可点击 span 索引，创建之后查询时不再分配内存，也不需要复制文本。
+ * <p>
+ * 查找由 htmlparse-core 的 {@link LineRangeIndex} 完成，这里只负责从 span 和 layout 中计算每个 span 所在的行。
+ * 只在创建时读取一次 span 和 layout，文本或者 layout 发生变化时需要重新创建
+ */
+final class ClickableSpanIndex {
+    private final CharSequence text;
+    private final Layout layout;
+    // 与 getSpans 返回的顺序一致，多个 span 重叠时返回最靠前的 span
+    private final ClickableSpan[] spans;
+    private final LineRangeIndex index;
+
+    ClickableSpanIndex(CharSequence text, Layout layout) {
+        this.text = text;
+        this.layout = layout;
+        if (text instanceof Spanned) {
+            Spanned spanned = (Spanned) text;
+            spans = spanned.getSpans(0, spanned.length(), ClickableSpan.class);
+        } else {
+            spans = new ClickableSpan[0];
+        }
+
+        int count = spans.length;
+        int[] starts = new int[count];
+        int[] ends = new int[count];
+        int[] firstLines = new int[count];
+        int[] lastLines = new int[count];
+        for (int i = 0; i < count; i++) {
+            Spanned spanned = (Spanned) text;
+            starts[i] = spanned.getSpanStart(spans[i]);
+            ends[i] = spanned.getSpanEnd(spans[i]);
+            // 行尾的位置和下一行的行首相同，点击这两行都可能得到这个位置
+            int first = layout.getLineForOffset(starts[i]);
+            if (first > 0 && layout.getLineStart(first) == starts[i]) {
+                first--;
+            }
+            firstLines[i] = first;
+            lastLines[i] = layout.getLineForOffset(ends[i]);
+        }
+        index = new LineRangeIndex(layout.getLineCount(), starts, ends, firstLines, lastLines);
+    }
+
+    /**
+     * @return 是否是为 text 和 layout 这两个实例创建的索引
+     */
+    boolean isFor(CharSequence text, Layout layout) {
+        return this.text == text && this.layout == layout;
+    }
+
+    /**
+     * 查找第 line 行中包含 offset 的可点击 span，与 getSpans(offset, offset, ClickableSpan.class)[0] 一致
+     * @return 没有时返回 null
+     */
+    ClickableSpan find(int line, int offset) {
+        int found = index.find(line, offset);
+        return found < 0 ? null : spans[found];
+    }
+}
@@ -0,0 +1,125 @@
+package com.zhanyage.htmlparselib;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.util.LruCache;
+
+/**
+ * 解码后图片的 LRU 缓存，按 bitmap 实际占用的内存限制大小。
+ * <p>
+ * 缓存的 key 由图片 url 和展示尺寸组成，解析时命中缓存的图片直接展示，不会先显示占位图再重新布局。
+ * 同一个缓存可以在多个 HtmlText 之间共享，通过 {@link HtmlText#setBitmapCache(HtmlBitmapCache)} 开启。
+ * <p>
+ * 放入缓存的 bitmap 会被继续使用，imageLoader 回调之后不能再回收这些 bitmap
+ */
+public final class HtmlBitmapCache {
+    private final LruCache<Key, Bitmap> cache;
+
+    /**
+     * @param maxBytes 缓存允许占用的最大字节数
+     */
+    public HtmlBitmapCache(int maxBytes) {
+        cache = new LruCache<Key, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(Key key, Bitmap value) {
+                return getBitmapBytes(value);
+            }
+        };
+    }
+
+    private static int getBitmapBytes(Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return bitmap.getAllocationByteCount();
+        }
+        return bitmap.getByteCount();
+    }
+
+    public int hitCount() {
+        return cache.hitCount();
+    }
+
+    public int missCount() {
+        return cache.missCount();
+    }
+
+    /**
+     * @return 命中率，还没有查询过时返回 0
+     */
+    public float hitRate() {
+        int hit = cache.hitCount();
+        int total = hit + cache.missCount();
+        return total == 0 ? 0f : (float) hit / total;
+    }
+
+    public int evictionCount() {
+        return cache.evictionCount();
+    }
+
+    /**
+     * @return 当前缓存的 bitmap 占用的字节数
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    public int maxSize() {
+        return cache.maxSize();
+    }
+
+    public void evictAll() {
+        cache.evictAll();
+    }
+
+    /**
+     * @param source 图片的 url，video 的首帧图片带有 {@link HtmlImageGetter#VIDEO_IMG_TAG} 前缀
+     * @return 缓存的 bitmap，没有缓存或者已经被回收时返回 null
+     */
+    Bitmap get(String source, int width, int height) {
+        Key key = new Key(source, width, height);
+        Bitmap bitmap = cache.get(key);
+        if (bitmap != null && bitmap.isRecycled()) {
+            cache.remove(key);
+            return null;
+        }
+        return bitmap;
+    }
+
+    void put(String source, int width, int height, Bitmap bitmap) {
+        if (bitmap == null || bitmap.isRecycled()) {
+            return;
+        }
+        cache.put(new Key(source, width, height), bitmap);
+    }
+
+    private static final class Key {
+        private final String source;
+        private final int width;
+        private final int height;
+
+        Key(String source, int width, int height) {
+            this.source = source;
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return width == key.width && height == key.height && source.equals(key.source);
+        }
+
+        @Override
+        public int hashCode() {
+            int h = source.hashCode();
+            h = 31 * h + width;
+            h = 31 * h + height;
+            return h;
+        }
+    }
+}
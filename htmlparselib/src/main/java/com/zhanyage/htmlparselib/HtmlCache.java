@@ -0,0 +1,209 @@
+package com.zhanyage.htmlparselib;
+
+import android.text.Html;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.SpannedString;
+import android.text.style.ImageSpan;
+import android.util.LruCache;
+
+import com.zhanyage.htmlparselib.api.CustomTagHandler;
+import com.zhanyage.htmlparselib.api.HtmlImageLoader;
+import com.zhanyage.htmlparselib.span.VideoSpan;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 解析结果的 LRU 缓存，缓存的是 overrideTags 和 Html.fromHtml 的结果，按照估算的字节数限制大小。
+ * <p>
+ * 缓存的 key 由 html 内容和会影响解析结果的配置（字体大小、屏幕密度、图片最大宽度、是否适配宽度）组成；
+ * value 是不可变的 Spanned 模板，其中的图片只保留 url，每次取出时重新生成 drawable，
+ * 所以缓存不会持有 TextView 和图片。
+ * <p>
+ * 同一个缓存可以在多个 HtmlText 之间共享，通过 {@link HtmlText#setCache(HtmlCache)} 开启
+ */
+public final class HtmlCache {
+    /**
+     * 每个 span 在 SpannableStringBuilder 中的大致开销：span 对象本身、start/end/flags 数组以及索引
+     */
+    private static final int SPAN_OVERHEAD_BYTES = 64;
+    private static final int OBJECT_OVERHEAD_BYTES = 64;
+
+    private final LruCache<Key, Spanned> cache;
+
+    /**
+     * @param maxBytes 缓存允许占用的最大字节数，按 {@link #estimateBytes(Spanned)} 估算
+     */
+    public HtmlCache(int maxBytes) {
+        cache = new LruCache<Key, Spanned>(maxBytes) {
+            @Override
+            protected int sizeOf(Key key, Spanned value) {
+                return estimateBytes(value) + key.source.length() * 2;
+            }
+        };
+    }
+
+    /**
+     * 估算解析结果占用的内存
+     * @param spanned 解析结果
+     * @return 估算的字节数
+     */
+    public static int estimateBytes(Spanned spanned) {
+        int spanCount = spanned.getSpans(0, spanned.length(), Object.class).length;
+        return OBJECT_OVERHEAD_BYTES + spanned.length() * 2 + spanCount * SPAN_OVERHEAD_BYTES;
+    }
+
+    public int hitCount() {
+        return cache.hitCount();
+    }
+
+    public int missCount() {
+        return cache.missCount();
+    }
+
+    public int evictionCount() {
+        return cache.evictionCount();
+    }
+
+    /**
+     * @return 当前缓存占用的估算字节数
+     */
+    public int size() {
+        return cache.size();
+    }
+
+    public int maxSize() {
+        return cache.maxSize();
+    }
+
+    public void evictAll() {
+        cache.evictAll();
+    }
+
+    static Key key(String source, float textSize, float density, HtmlImageLoader imageLoader,
+                   Map<String, CustomTagHandler> customTagHandlers) {
+        int maxWidth = imageLoader == null ? 0 : imageLoader.getMaxWidth();
+        boolean fitWidth = imageLoader != null && imageLoader.fitWidth();
+        Map<String, CustomTagHandler> handlers = (customTagHandlers == null || customTagHandlers.isEmpty())
+                ? null : new HashMap<>(customTagHandlers);
+        return new Key(source, textSize, density, maxWidth, fitWidth, handlers);
+    }
+
+    /**
+     * 取出缓存的解析结果，图片会通过 imageGetter 重新生成 drawable
+     * @return 可以直接修改的解析结果，没有缓存时返回 null
+     */
+    SpannableStringBuilder get(Key key, Html.ImageGetter imageGetter) {
+        Spanned template = cache.get(key);
+        if (template == null) {
+            return null;
+        }
+
+        SpannableStringBuilder ssb = new SpannableStringBuilder(template);
+        ImageMark[] marks = ssb.getSpans(0, ssb.length(), ImageMark.class);
+        for (ImageMark mark : marks) {
+            int start = ssb.getSpanStart(mark);
+            int end = ssb.getSpanEnd(mark);
+            int flags = ssb.getSpanFlags(mark);
+            ssb.removeSpan(mark);
+            ssb.setSpan(mark.newSpan(imageGetter), start, end, flags);
+        }
+        return ssb;
+    }
+
+    /**
+     * 把解析结果转成不持有 drawable 的模板放入缓存
+     */
+    void put(Key key, Spanned spanned) {
+        SpannableStringBuilder template = new SpannableStringBuilder(spanned);
+        ImageSpan[] imageSpans = template.getSpans(0, template.length(), ImageSpan.class);
+        for (ImageSpan imageSpan : imageSpans) {
+            int start = template.getSpanStart(imageSpan);
+            int end = template.getSpanEnd(imageSpan);
+            int flags = template.getSpanFlags(imageSpan);
+            template.removeSpan(imageSpan);
+            template.setSpan(new ImageMark(imageSpan), start, end, flags);
+        }
+        cache.put(key, new SpannedString(template));
+    }
+
+    /**
+     * 模板中代替 ImageSpan、VideoSpan 的标记
+     */
+    private static class ImageMark {
+        private final String source;
+        private final boolean video;
+        private final String videoUrl;
+
+        ImageMark(ImageSpan imageSpan) {
+            source = imageSpan.getSource();
+            video = imageSpan instanceof VideoSpan;
+            videoUrl = video ? ((VideoSpan) imageSpan).getResourceUrl() : null;
+        }
+
+        ImageSpan newSpan(Html.ImageGetter imageGetter) {
+            if (video) {
+                String imgUrl = (source == null || source.length() == 0)
+                        ? HtmlTagHandler.VIDEO_DEFAULT_IMG_TAG : source;
+                VideoSpan videoSpan = new VideoSpan(imageGetter.getDrawable(HtmlImageGetter.VIDEO_IMG_TAG + imgUrl), source);
+                videoSpan.setResourceUrl(videoUrl);
+                return videoSpan;
+            }
+            return new ImageSpan(imageGetter.getDrawable(source), source);
+        }
+    }
+
+    static final class Key {
+        private final String source;
+        private final float textSize;
+        private final float density;
+        private final int maxWidth;
+        private final boolean fitWidth;
+        // 自定义标签处理器会影响解析结果，按处理器实例区分
+        private final Map<String, CustomTagHandler> customTagHandlers;
+        private final int hash;
+
+        Key(String source, float textSize, float density, int maxWidth, boolean fitWidth,
+            Map<String, CustomTagHandler> customTagHandlers) {
+            this.source = source;
+            this.textSize = textSize;
+            this.density = density;
+            this.maxWidth = maxWidth;
+            this.fitWidth = fitWidth;
+            this.customTagHandlers = customTagHandlers;
+
+            int h = source.hashCode();
+            h = 31 * h + Float.floatToIntBits(textSize);
+            h = 31 * h + Float.floatToIntBits(density);
+            h = 31 * h + maxWidth;
+            h = 31 * h + (fitWidth ? 1 : 0);
+            h = 31 * h + (customTagHandlers == null ? 0 : customTagHandlers.hashCode());
+            hash = h;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return hash == key.hash
+                    && Float.compare(textSize, key.textSize) == 0
+                    && Float.compare(density, key.density) == 0
+                    && maxWidth == key.maxWidth
+                    && fitWidth == key.fitWidth
+                    && (customTagHandlers == null ? key.customTagHandlers == null
+                    : customTagHandlers.equals(key.customTagHandlers))
+                    && source.equals(key.source);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.zhanyage.htmlparselib;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 把很长的 html 按块级元素的边界（&lt;/p&gt;、&lt;/div&gt;、&lt;/li&gt;、&lt;br&gt;）切成多段，每一段可以单独解析。
+ * <p>
+ * 切分时记录还没有结束的标签：当前段的末尾补上这些标签的结束标签，下一段的开头重新打开这些标签，
+ * 所以跨段的字体、颜色等样式不会丢失；有序列表重新打开时带上 start 属性，序号可以接着上一段继续。
+ * 只有当还没有结束的标签都可以安全地重新打开时才会切分，例如在 p、li、a、center 标签中间不会切分
+ */
+final class HtmlChunker {
+
+    /**
+     * 可以在中间切分的标签，切分后重新打开不会多出换行或者序号。
+     * center 结束时总是追加换行，补上的结束标签会多出一个空行，所以不在其中
+     */
+    private static final String[] REOPENABLE_TAGS = {
+            "div", "ul", "ol", "font", "span", "b", "strong", "i", "em", "u", "s", "strike",
+            "code", "big", "small", "sub", "sup",
+    };
+
+    /**
+     * 没有结束标签的元素
+     */
+    private static final String[] VOID_TAGS = {
+            "br", "img", "hr", "input", "meta", "link", "area", "base", "col", "embed", "param",
+            "source", "track", "wbr",
+    };
+
+    private static final String COMMENT_START = "<!--";
+    private static final String COMMENT_END = "-->";
+
+    private HtmlChunker() {
+    }
+
+    /**
+     * 切分 html
+     *
+     * @param html 原始 html
+     * @param firstChunkLength 第一段的最小长度，一般是一屏内容的长度
+     * @param chunkLength 之后每一段的最小长度
+     * @return 每一段可以单独解析的 html，至少有一段
+     */
+    static List<String> split(String html, int firstChunkLength, int chunkLength) {
+        List<String> chunks = new ArrayList<>();
+        List<OpenTag> openTags = new ArrayList<>();
+        final int length = html.length();
+        int minLength = firstChunkLength;
+        int chunkStart = 0;
+        String prefix = "";
+
+        int i = 0;
+        while (i < length) {
+            if (html.charAt(i) != '<') {
+                i++;
+                continue;
+            }
+            if (html.startsWith(COMMENT_START, i)) {
+                int end = html.indexOf(COMMENT_END, i + COMMENT_START.length());
+                i = end < 0 ? length : end + COMMENT_END.length();
+                continue;
+            }
+
+            int nameStart = i + 1;
+            boolean closing = nameStart < length && html.charAt(nameStart) == '/';
+            if (closing) {
+                nameStart++;
+            }
+            int nameEnd = nameStart;
+            while (nameEnd < length && Character.isLetterOrDigit(html.charAt(nameEnd))) {
+                nameEnd++;
+            }
+            if (nameEnd == nameStart) {
+                i++;
+                continue;
+            }
+            int tagEnd = findTagEnd(html, nameEnd);
+            String name = html.substring(nameStart, nameEnd).toLowerCase(Locale.US);
+
+            boolean boundary;
+            if (closing) {
+                closeTag(openTags, name);
+                boundary = name.equals("p") || name.equals("div") || name.equals("li");
+            } else if (contains(VOID_TAGS, name) || html.charAt(tagEnd - 2) == '/') {
+                boundary = name.equals("br");
+            } else {
+                openTag(openTags, name, html.substring(i, tagEnd));
+                boundary = false;
+            }
+            i = tagEnd;
+
+            if (boundary && i - chunkStart >= minLength && i < length && canSplit(openTags)) {
+                StringBuilder chunk = new StringBuilder(prefix.length() + i - chunkStart + openTags.size() * 8);
+                chunk.append(prefix).append(html, chunkStart, i);
+                for (int j = openTags.size() - 1; j >= 0; j--) {
+                    chunk.append("</").append(openTags.get(j).name).append('>');
+                }
+                chunks.add(chunk.toString());
+
+                prefix = reopen(openTags);
+                chunkStart = i;
+                minLength = chunkLength;
+            }
+        }
+
+        if (chunkStart < length || chunks.isEmpty()) {
+            chunks.add(prefix + html.substring(chunkStart));
+        }
+        return chunks;
+    }
+
+    private static void openTag(List<OpenTag> openTags, String name, String startTag) {
+        // 没有写结束标签的 p、li 遇到下一个同名标签时结束
+        if ((name.equals("p") || name.equals("li")) && !openTags.isEmpty()
+                && openTags.get(openTags.size() - 1).name.equals(name)) {
+            openTags.remove(openTags.size() - 1);
+        }
+        if (name.equals("li") && !openTags.isEmpty()) {
+            OpenTag parent = openTags.get(openTags.size() - 1);
+            if (parent.name.equals("ol")) {
+                parent.itemCount++;
+            }
+        }
+        openTags.add(new OpenTag(name, startTag));
+    }
+
+    /**
+     * 结束最近一个同名的标签，中间没有结束的标签一起结束；找不到同名标签时忽略
+     */
+    private static void closeTag(List<OpenTag> openTags, String name) {
+        for (int j = openTags.size() - 1; j >= 0; j--) {
+            if (openTags.get(j).name.equals(name)) {
+                while (openTags.size() > j) {
+                    openTags.remove(openTags.size() - 1);
+                }
+                return;
+            }
+        }
+    }
+
+    private static boolean canSplit(List<OpenTag> openTags) {
+        for (int j = 0; j < openTags.size(); j++) {
+            if (!contains(REOPENABLE_TAGS, openTags.get(j).name)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String reopen(List<OpenTag> openTags) {
+        StringBuilder prefix = new StringBuilder();
+        for (int j = 0; j < openTags.size(); j++) {
+            OpenTag openTag = openTags.get(j);
+            if (openTag.name.equals("ol")) {
+                // 重新打开的有序列表从下一个序号开始
+                int start = getStart(openTag.startTag) + openTag.itemCount;
+                prefix.append("<ol start=\"").append(start).append("\">");
+            } else {
+                prefix.append(openTag.startTag);
+            }
+        }
+        return prefix.toString();
+    }
+
+    /**
+     * 读取有序列表的 start 属性，没有时为 1
+     */
+    static int getStart(String startTag) {
+        int length = startTag.length();
+        int i = 0;
+        while ((i = indexOfIgnoreCase(startTag, "start", i)) >= 0) {
+            int j = i + "start".length();
+            boolean attributeName = i > 0 && Character.isWhitespace(startTag.charAt(i - 1));
+            while (j < length && Character.isWhitespace(startTag.charAt(j))) {
+                j++;
+            }
+            if (attributeName && j < length && startTag.charAt(j) == '=') {
+                j++;
+                while (j < length && (Character.isWhitespace(startTag.charAt(j))
+                        || startTag.charAt(j) == '"' || startTag.charAt(j) == '\'')) {
+                    j++;
+                }
+                int value = 0;
+                int digits = 0;
+                while (j < length && startTag.charAt(j) >= '0' && startTag.charAt(j) <= '9' && digits < 9) {
+                    value = value * 10 + (startTag.charAt(j) - '0');
+                    j++;
+                    digits++;
+                }
+                return digits > 0 ? value : 1;
+            }
+            i = j;
+        }
+        return 1;
+    }
+
+    private static int indexOfIgnoreCase(String s, String target, int from) {
+        for (int i = from; i <= s.length() - target.length(); i++) {
+            if (s.regionMatches(true, i, target, 0, target.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return 标签结束后的下一个位置，属性值中的 '&gt;' 不会结束标签
+     */
+    private static int findTagEnd(String html, int from) {
+        char quote = 0;
+        int i = from;
+        while (i < html.length()) {
+            char c = html.charAt(i++);
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '"' || c == '\'') {
+                quote = c;
+            } else if (c == '>') {
+                return i;
+            }
+        }
+        return html.length();
+    }
+
+    private static boolean contains(String[] names, String name) {
+        for (String n : names) {
+            if (n.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class OpenTag {
+        private final String name;
+        private final String startTag;
+        // 有序列表中已经出现的 li 数量
+        private int itemCount;
+
+        OpenTag(String name, String startTag) {
+            this.name = name;
+            this.startTag = startTag;
+        }
+    }
+}
@@ -2,36 +2,73 @@ package com.zhanyage.htmlparselib;
 
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.Rect;
 import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
+import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
+import android.text.Editable;
 import android.text.Html;
+import android.text.Layout;
+import android.text.Spannable;
+import android.text.Spanned;
 import android.text.TextUtils;
+import android.text.style.ImageSpan;
+import android.view.View;
+import android.view.ViewParent;
+import android.view.ViewTreeObserver;
 import android.widget.TextView;
 
+import com.zhanyage.htmlparsecore.HtmlDocument;
+import com.zhanyage.htmlparsecore.HtmlImageSizes;
+import com.zhanyage.htmlparsecore.StyleRun;
+import com.zhanyage.htmlparselib.api.CancelableImageLoader;
 import com.zhanyage.htmlparselib.api.HtmlImageLoader;
+import com.zhanyage.htmlparselib.api.HtmlMetricsListener;
+import com.zhanyage.htmlparselib.api.SizedImageLoader;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
 
 /**
  * htmlTagHandler 获取 drawable 的类，该类主要是对内提供 drawable，对外调用 api 获取
  * drawable，起到了一个中间层的作用
  */
 class HtmlImageGetter implements Html.ImageGetter {
-    private static final Pattern IMAGE_TAG_PATTERN = Pattern.compile("<(img|IMG)\\s+([^>]*)>");
-    private static final Pattern IMAGE_WIDTH_PATTERN = Pattern.compile("(width|WIDTH)\\s*=\\s*\"?(\\w+)\"?");
-    private static final Pattern IMAGE_HEIGHT_PATTERN = Pattern.compile("(height|HEIGHT)\\s*=\\s*\"?(\\w+)\"?");
+    static final String VIDEO_IMG_TAG = "VIDEO_IMG_TAG";
+
 
     private TextView textView;
     private HtmlImageLoader imageLoader;
+    private HtmlMetricsListener metricsListener;
     private List<ImageSize> imageSizeList;
+    // 解析过程中收集到的图片，可能在后台线程写入，绑定时交给主线程
+    private List<PendingLoad> parsedLoads;
+    // 还没有发起请求的图片
+    private List<PendingLoad> pendingLoads;
+    // 已经发起请求、还没有完成的图片
+    private List<PendingLoad> activeLoads;
+    // 当前文档中还没有完成的请求，url -> 请求
+    private Map<String, ImageRequest> inFlightRequests;
+    private boolean shareRequests;
+    private HtmlBitmapCache bitmapCache;
+    // 懒加载时提前加载的距离，小于 0 表示不使用懒加载
+    private int lazyDistance = -1;
+    private ViewportWatcher viewportWatcher;
+    // textView 已经绑定了新的内容，之后的加载结果都会被丢弃
+    private boolean released;
     private int index;
 
     public HtmlImageGetter() {
         imageSizeList = new ArrayList<>();
+        parsedLoads = new ArrayList<>();
+        pendingLoads = new ArrayList<>();
+        activeLoads = new ArrayList<>();
+        inFlightRequests = new HashMap<>();
     }
 
     public void setTextView(TextView textView) {
@@ -42,106 +79,597 @@ class HtmlImageGetter implements Html.ImageGetter {
         this.imageLoader = imageLoader;
     }
 
+    /**
+     * @param metricsListener 统计每张图片的加载耗时，为 null 时不统计
+     */
+    public void setMetricsListener(HtmlMetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+    }
+
+    /**
+     * @param shareRequests 是否与其他使用同一个 imageLoader 的文档共享还没有完成的图片请求
+     */
+    public void setShareRequests(boolean shareRequests) {
+        this.shareRequests = shareRequests;
+    }
+
+    public void setBitmapCache(HtmlBitmapCache bitmapCache) {
+        this.bitmapCache = bitmapCache;
+    }
+
+    /**
+     * @param lazyDistance 图片所在的行距离可见区域小于这个距离 px 时才开始加载，小于 0 时立即加载所有图片
+     */
+    public void setLazyDistance(int lazyDistance) {
+        this.lazyDistance = lazyDistance;
+    }
+
     public void getImageSize(String source) {
-        Matcher imageMatcher = IMAGE_TAG_PATTERN.matcher(source);
-        while (imageMatcher.find()) {
-            String attrs = imageMatcher.group(2).trim();
-            int width = -1;
-            int height = -1;
-            Matcher widthMatcher = IMAGE_WIDTH_PATTERN.matcher(attrs);
-            if (widthMatcher.find()) {
-                width = parseSize(widthMatcher.group(2).trim());
-            }
-            Matcher heightMatcher = IMAGE_HEIGHT_PATTERN.matcher(attrs);
-            if (heightMatcher.find()) {
-                height = parseSize(heightMatcher.group(2).trim());
+        int[] sizes = HtmlImageSizes.scan(source);
+        for (int i = 0; i < sizes.length; i += 2) {
+            imageSizeList.add(new ImageSize(sizes[i], sizes[i + 1]));
+        }
+    }
+
+    /**
+     * 从已经解析好的文档中按顺序读取图片的宽高，不再扫描 html
+     */
+    public void getImageSize(HtmlDocument document) {
+        final int runCount = document.getRunCount();
+        for (int i = 0; i < runCount; i++) {
+            if (document.getRunType(i) == StyleRun.IMAGE) {
+                imageSizeList.add(new ImageSize(document.getRunValue(i), document.getRunExtra(i)));
             }
-            ImageSize imageSize = new ImageSize(width, height);
-            imageSizeList.add(imageSize);
         }
     }
 
     /**
-     * 内部调用获取 Drawable 的方法
+     * 内部调用获取 Drawable 的方法，这里只设置占位图，真正的加载在 {@link #startLoading()} 中进行，
+     * 所以可以在后台线程解析 html
      * @param source 图片的 url
      * @return 将要展示的图片的 Drawable
      */
     @Override
     public Drawable getDrawable(String source) {
-
-        final ImageDrawable imageDrawable = new ImageDrawable(index++);
+        // getImageSize 只统计了 img 标签，video 的首帧图片不占用 img 的位置
+        boolean video = source != null && source.startsWith(VIDEO_IMG_TAG);
+        final ImageDrawable imageDrawable = new ImageDrawable(video ? -1 : index++);
         if (imageLoader != null && !TextUtils.isEmpty(source)) {
-            imageDrawable.setDrawable(imageLoader.getDefaultDrawable(), false);
-            if (source.startsWith("VIDEO_IMG_TAG")) {
-                imageLoader.loadVideoImage(source.substring(13), new HtmlImageLoader.Callback() {
-                    @Override
-                    public void onLoadComplete(final Bitmap bitmap) {
-                        runOnUi(new Runnable() {
-                            @Override
-                            public void run() {
-                                Drawable drawable = new BitmapDrawable(textView.getResources(), bitmap);
-                                imageDrawable.setDrawable(drawable, true);
-                                textView.setText(textView.getText());
-                            }
-                        });
-                    }
+            Bitmap cached = null;
+            if (bitmapCache != null) {
+                int[] targetSize = imageDrawable.getTargetSize();
+                cached = bitmapCache.get(source, targetSize[0], targetSize[1]);
+            }
+            if (cached != null) {
+                // 命中缓存时直接使用解码好的图片，第一次布局就是最终的尺寸
+                imageDrawable.setDrawable(new BitmapDrawable(textView.getResources(), cached), true);
+            } else {
+                // 懒加载时占位图按照 img 标签的宽高展示，图片加载前后文字的位置不会变化
+                imageDrawable.setDrawable(imageLoader.getDefaultDrawable(), lazyDistance >= 0);
+                parsedLoads.add(new PendingLoad(source, imageDrawable));
+            }
+        }
+
+        return imageDrawable;
+    }
+
+    /**
+     * 记录 textView 当前绑定的 imageGetter。RecyclerView 复用 textView 时，之前绑定的 imageGetter 会被释放，
+     * 还没有完成的加载会被取消，加载结果不会再刷新这个 textView。需要在主线程调用
+     * @param imageGetter 新绑定的 imageGetter，为 null 时只释放之前绑定的
+     */
+    static void bind(TextView textView, HtmlImageGetter imageGetter) {
+        Object previous = textView.getTag(R.id.htmlparse_binding);
+        if (previous == imageGetter) {
+            return;
+        }
+        if (previous instanceof HtmlImageGetter) {
+            ((HtmlImageGetter) previous).release();
+        }
+        // 之前的内容等待中的重新布局已经没有意义
+        RelayoutScheduler.cancel(textView);
+        textView.setTag(R.id.htmlparse_binding, imageGetter);
+    }
+
+    /**
+     * 放弃所有还没有完成的加载，imageLoader 实现了 {@link CancelableImageLoader} 时通知外部取消
+     */
+    private void release() {
+        released = true;
+        if (viewportWatcher != null) {
+            viewportWatcher.detach();
+        }
+        for (int i = 0; i < activeLoads.size(); i++) {
+            PendingLoad load = activeLoads.get(i);
+            if (load.request != null) {
+                load.request.removeWaiter(load);
+            }
+        }
+        activeLoads.clear();
+        pendingLoads.clear();
+        inFlightRequests.clear();
+    }
 
-                    @Override
-                    public void onLoadFailed() {
-                        runOnUi(new Runnable() {
-                            @Override
-                            public void run() {
-                                imageDrawable.setDrawable(imageLoader.getErrorDrawable(), false);
-                                textView.setText(textView.getText());
-                            }
-                        });
+    /**
+     * 开始加载解析过程中收集到的图片，需要在主线程 setText 之后调用，可以多次调用，每次加载新解析出的图片。
+     * 同一个 url 只会向 imageLoader 请求一次，所有使用这个 url 的图片共享解码后的 bitmap；
+     * 懒加载时只加载可见区域附近的图片，其余的图片在滚动到附近时再加载
+     */
+    void startLoading() {
+        if (released) {
+            return;
+        }
+        pendingLoads.addAll(parsedLoads);
+        parsedLoads.clear();
+        if (lazyDistance >= 0) {
+            if (!pendingLoads.isEmpty()) {
+                if (viewportWatcher == null) {
+                    viewportWatcher = new ViewportWatcher();
+                }
+                viewportWatcher.attach();
+            }
+            return;
+        }
+        List<PendingLoad> loads = new ArrayList<>(pendingLoads);
+        pendingLoads.clear();
+        start(loads);
+    }
+
+    /**
+     * 发起图片的请求，已经有相同 url 的请求时直接等待这个请求的结果
+     */
+    private void start(List<PendingLoad> loads) {
+        // 按 url 第一次出现的顺序发起请求
+        List<ImageRequest> newRequests = null;
+        for (int i = 0; i < loads.size(); i++) {
+            PendingLoad load = loads.get(i);
+            ImageRequest request = inFlightRequests.get(load.source);
+            if (request == null) {
+                request = shareRequests ? ImageRequest.findInFlight(imageLoader, load.source) : null;
+                if (request == null) {
+                    request = new ImageRequest(imageLoader, load.source, shareRequests);
+                    if (newRequests == null) {
+                        newRequests = new ArrayList<>();
                     }
-                });
+                    newRequests.add(request);
+                }
+                inFlightRequests.put(load.source, request);
+            }
+            request.addWaiter(load);
+            activeLoads.add(load);
+        }
+
+        // 等待者全部加入后再发起请求，imageLoader 同步回调时也不会漏掉
+        if (newRequests != null) {
+            for (ImageRequest request : newRequests) {
+                request.start();
+            }
+        }
+    }
+
+    private void onImageLoaded(String source, ImageDrawable imageDrawable, Bitmap bitmap) {
+        if (bitmapCache != null) {
+            int[] targetSize = imageDrawable.getTargetSize();
+            bitmapCache.put(source, targetSize[0], targetSize[1], bitmap);
+        }
+        Drawable drawable = new BitmapDrawable(textView.getResources(), bitmap);
+        refresh(imageDrawable, imageDrawable.setDrawable(drawable, true));
+    }
+
+    private void onImageFailed(ImageDrawable imageDrawable) {
+        refresh(imageDrawable, imageDrawable.setDrawable(imageLoader.getErrorDrawable(), false));
+    }
+
+    /**
+     * 图片替换后刷新 textView，只有尺寸变化时才需要重新布局，否则只重绘
+     * @param boundsChanged 图片的尺寸是否发生了变化
+     */
+    private void refresh(ImageDrawable imageDrawable, boolean boundsChanged) {
+        if (boundsChanged) {
+            RelayoutScheduler.requestRelayout(textView);
+            return;
+        }
+        CharSequence text = textView.getText();
+        // 可编辑（包括渐进渲染）、可选择的 TextView 由 Editor 按段缓存文字的绘制结果，invalidate 不会更新图片。
+        // 原地重新设置图片的 span 会触发 span 变化的通知，Editor 只重新绘制图片所在的段
+        if (text instanceof Spannable && (text instanceof Editable || textView.isTextSelectable())) {
+            touchImageSpan((Spannable) text, imageDrawable);
+        }
+        textView.invalidate();
+    }
+
+    private static void touchImageSpan(Spannable text, Drawable drawable) {
+        ImageSpan[] spans = text.getSpans(0, text.length(), ImageSpan.class);
+        for (ImageSpan span : spans) {
+            if (span.getDrawable() == drawable) {
+                text.setSpan(span, text.getSpanStart(span), text.getSpanEnd(span), text.getSpanFlags(span));
+            }
+        }
+    }
+
+    /**
+     * 一个 url 对应的加载请求，在主线程中维护等待这个 url 的所有图片，请求完成后把同一个 bitmap 分发给它们。
+     * <p>
+     * 开启共享后，使用同一个 imageLoader 同时渲染的多个文档也会复用还没有完成的请求，
+     * 这要求 imageLoader 无论成功还是失败都一定会回调，否则这个 url 之后的请求会一直等待
+     */
+    private static class ImageRequest implements HtmlImageLoader.Callback {
+        private static final String TRACE_LOAD = "HtmlImage.load";
+        // 所有共享中的请求，imageLoader -> (url -> 请求)，只在主线程访问
+        private static final Map<HtmlImageLoader, Map<String, ImageRequest>> sInFlight = new HashMap<>();
+        private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+        private final HtmlImageLoader imageLoader;
+        private final String source;
+        private final boolean shared;
+        private final List<PendingLoad> waiters = new ArrayList<>();
+        // 已经完成或者已经取消
+        private boolean finished;
+        // 加载过程的异步区间，没有输出时为 0
+        private int traceCookie;
+
+        ImageRequest(HtmlImageLoader imageLoader, String source, boolean shared) {
+            this.imageLoader = imageLoader;
+            this.source = source;
+            this.shared = shared;
+        }
+
+        static ImageRequest findInFlight(HtmlImageLoader imageLoader, String source) {
+            Map<String, ImageRequest> requests = sInFlight.get(imageLoader);
+            return requests == null ? null : requests.get(source);
+        }
+
+        void addWaiter(PendingLoad load) {
+            waiters.add(load);
+            load.request = this;
+        }
+
+        /**
+         * 移除不再需要这个请求的图片，没有等待者时取消请求
+         * @return 请求是否已经被取消
+         */
+        boolean removeWaiter(PendingLoad load) {
+            waiters.remove(load);
+            load.request = null;
+            if (!waiters.isEmpty() || finished) {
+                return false;
+            }
+            finish();
+            if (imageLoader instanceof CancelableImageLoader) {
+                ((CancelableImageLoader) imageLoader).cancel(this);
+            }
+            return true;
+        }
+
+        void start() {
+            traceCookie = HtmlTrace.beginAsync(TRACE_LOAD);
+            if (shared) {
+                Map<String, ImageRequest> requests = sInFlight.get(imageLoader);
+                if (requests == null) {
+                    requests = new HashMap<>();
+                    sInFlight.put(imageLoader, requests);
+                }
+                requests.put(source, this);
+            }
+
+            if (imageLoader instanceof SizedImageLoader) {
+                // 提前告诉外部图片最终展示的尺寸，外部可以按这个尺寸解码。
+                // 同一个 url 展示尺寸不同时按最大的尺寸解码，之后加入的共享等待者沿用这个尺寸
+                SizedImageLoader sizedImageLoader = (SizedImageLoader) imageLoader;
+                int[] targetSize = {0, 0};
+                for (PendingLoad load : waiters) {
+                    int[] size = load.imageDrawable.getTargetSize();
+                    targetSize[0] = Math.max(targetSize[0], size[0]);
+                    targetSize[1] = Math.max(targetSize[1], size[1]);
+                }
+                if (source.startsWith(VIDEO_IMG_TAG)) {
+                    sizedImageLoader.loadVideoImage(source.substring(VIDEO_IMG_TAG.length()),
+                            targetSize[0], targetSize[1], this);
+                } else {
+                    sizedImageLoader.loadImage(source, targetSize[0], targetSize[1], this);
+                }
+            } else if (source.startsWith(VIDEO_IMG_TAG)) {
+                imageLoader.loadVideoImage(source.substring(VIDEO_IMG_TAG.length()), this);
             } else {
-                imageLoader.loadImage(source, new HtmlImageLoader.Callback() {
-                    @Override
-                    public void onLoadComplete(final Bitmap bitmap) {
-                        runOnUi(new Runnable() {
-                            @Override
-                            public void run() {
-                                Drawable drawable = new BitmapDrawable(textView.getResources(), bitmap);
-                                imageDrawable.setDrawable(drawable, true);
-                                textView.setText(textView.getText());
-                            }
-                        });
+                imageLoader.loadImage(source, this);
+            }
+        }
+
+        @Override
+        public void onLoadComplete(final Bitmap bitmap) {
+            runOnUi(new Runnable() {
+                @Override
+                public void run() {
+                    if (finished) {
+                        return;
+                    }
+                    finish();
+                    for (int i = 0; i < waiters.size(); i++) {
+                        waiters.get(i).onLoadComplete(bitmap);
                     }
+                }
+            });
+        }
 
-                    @Override
-                    public void onLoadFailed() {
-                        runOnUi(new Runnable() {
-                            @Override
-                            public void run() {
-                                imageDrawable.setDrawable(imageLoader.getErrorDrawable(), false);
-                                textView.setText(textView.getText());
-                            }
-                        });
+        @Override
+        public void onLoadFailed() {
+            runOnUi(new Runnable() {
+                @Override
+                public void run() {
+                    if (finished) {
+                        return;
                     }
-                });
-            }
+                    finish();
+                    for (int i = 0; i < waiters.size(); i++) {
+                        waiters.get(i).onLoadFailed();
+                    }
+                }
+            });
+        }
 
+        /**
+         * 请求完成后不再接受新的等待者，之后的文档会重新发起请求
+         */
+        private void finish() {
+            finished = true;
+            HtmlTrace.endAsync(TRACE_LOAD, traceCookie);
+            traceCookie = 0;
+            if (!shared) {
+                return;
+            }
+            Map<String, ImageRequest> requests = sInFlight.get(imageLoader);
+            if (requests != null && requests.get(source) == this) {
+                requests.remove(source);
+                if (requests.isEmpty()) {
+                    sInFlight.remove(imageLoader);
+                }
+            }
         }
 
-        return imageDrawable;
+        private static void runOnUi(Runnable r) {
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                r.run();
+            } else {
+                sMainHandler.post(r);
+            }
+        }
     }
 
-    private void runOnUi(Runnable r) {
-        if (Looper.myLooper() == Looper.getMainLooper()) {
-            r.run();
-        } else {
-            textView.post(r);
+    /**
+     * 文档中的一张图片，从解析开始到加载完成
+     */
+    private class PendingLoad {
+        private final String source;
+        private final ImageDrawable imageDrawable;
+        // 正在等待的请求，还没有发起请求时为 null
+        private ImageRequest request;
+        // 图片在文本中的位置，懒加载时使用，不在文本中时为 -1
+        private int offset = -1;
+        // 获取 drawable 的时间，没有设置 metricsListener 时为 0
+        private final long createTime;
+
+        PendingLoad(String source, ImageDrawable imageDrawable) {
+            this.source = source;
+            this.imageDrawable = imageDrawable;
+            this.createTime = metricsListener != null ? SystemClock.uptimeMillis() : 0;
+        }
+
+        void onLoadComplete(Bitmap bitmap) {
+            if (released) {
+                return;
+            }
+            finish();
+            onImageLoaded(source, imageDrawable, bitmap);
+            report(true);
+        }
+
+        void onLoadFailed() {
+            if (released) {
+                return;
+            }
+            finish();
+            onImageFailed(imageDrawable);
+            report(false);
+        }
+
+        private void report(boolean success) {
+            if (metricsListener != null) {
+                metricsListener.onImageLoaded(source, SystemClock.uptimeMillis() - createTime, success);
+            }
+        }
+
+        /**
+         * 放弃正在等待的请求，重新回到还没有发起请求的状态
+         */
+        void cancel() {
+            ImageRequest current = request;
+            activeLoads.remove(this);
+            if (current.removeWaiter(this) && inFlightRequests.get(source) == current) {
+                inFlightRequests.remove(source);
+            }
+            pendingLoads.add(this);
+        }
+
+        private void finish() {
+            activeLoads.remove(this);
+            if (inFlightRequests.get(source) == request) {
+                inFlightRequests.remove(source);
+            }
+            request = null;
+            if (viewportWatcher != null && pendingLoads.isEmpty() && activeLoads.isEmpty()) {
+                viewportWatcher.detach();
+            }
         }
     }
 
-    private static int parseSize(String size) {
-        try {
-            return Integer.valueOf(size);
-        } catch (NumberFormatException e) {
-            return -1;
+    /**
+     * 懒加载时监听滚动和布局的变化，图片所在的行进入可见区域附近时才开始加载。
+     * 可见区域是 TextView 自身以及所有父 View（ScrollView、NestedScrollView、RecyclerView 等）的交集，
+     * 所以 TextView 自身滚动和外部容器滚动都能感知到。
+     * imageLoader 实现了 {@link CancelableImageLoader} 时，离开可见区域超过一屏的图片会取消加载，
+     * 回到附近时重新加载
+     */
+    private class ViewportWatcher implements ViewTreeObserver.OnScrollChangedListener,
+            ViewTreeObserver.OnGlobalLayoutListener, View.OnAttachStateChangeListener {
+        private final int[] location = new int[2];
+        private final List<PendingLoad> changed = new ArrayList<>();
+        private boolean attached;
+        private boolean registered;
+        private CharSequence indexedText;
+        private int indexedLength;
+        // 可见区域在文本 layout 坐标系中的范围，完全不可见时 top 可能大于 bottom
+        private int viewportTop;
+        private int viewportBottom;
+
+        void attach() {
+            if (!attached) {
+                attached = true;
+                textView.addOnAttachStateChangeListener(this);
+            }
+            if (textView.getWindowToken() != null) {
+                onViewAttachedToWindow(textView);
+            }
+        }
+
+        void detach() {
+            if (attached) {
+                attached = false;
+                textView.removeOnAttachStateChangeListener(this);
+            }
+            onViewDetachedFromWindow(textView);
+        }
+
+        @Override
+        public void onViewAttachedToWindow(View v) {
+            if (!registered) {
+                registered = true;
+                ViewTreeObserver observer = textView.getViewTreeObserver();
+                observer.addOnScrollChangedListener(this);
+                observer.addOnGlobalLayoutListener(this);
+            }
+            check();
+        }
+
+        @SuppressWarnings("deprecation")
+        @Override
+        public void onViewDetachedFromWindow(View v) {
+            if (registered) {
+                registered = false;
+                ViewTreeObserver observer = textView.getViewTreeObserver();
+                observer.removeOnScrollChangedListener(this);
+                // removeOnGlobalLayoutListener 在 API 16 才有
+                observer.removeGlobalOnLayoutListener(this);
+            }
+        }
+
+        @Override
+        public void onScrollChanged() {
+            check();
+        }
+
+        @Override
+        public void onGlobalLayout() {
+            check();
+        }
+
+        private void check() {
+            Layout layout = textView.getLayout();
+            if (layout == null) {
+                return;
+            }
+            computeViewport();
+            indexOffsets();
+
+            for (int i = 0; i < pendingLoads.size(); i++) {
+                PendingLoad load = pendingLoads.get(i);
+                if (isNear(layout, load, lazyDistance)) {
+                    changed.add(load);
+                }
+            }
+            if (!changed.isEmpty()) {
+                pendingLoads.removeAll(changed);
+                List<PendingLoad> loads = new ArrayList<>(changed);
+                changed.clear();
+                start(loads);
+            }
+
+            if (imageLoader instanceof CancelableImageLoader) {
+                int cancelDistance = lazyDistance + textView.getResources().getDisplayMetrics().heightPixels;
+                for (int i = 0; i < activeLoads.size(); i++) {
+                    PendingLoad load = activeLoads.get(i);
+                    if (!isNear(layout, load, cancelDistance)) {
+                        changed.add(load);
+                    }
+                }
+                for (int i = 0; i < changed.size(); i++) {
+                    changed.get(i).cancel();
+                }
+                changed.clear();
+            }
+        }
+
+        /**
+         * 计算可见区域，依次与每一个父 View 的范围求交集，再换算到文本 layout 的坐标系
+         */
+        private void computeViewport() {
+            textView.getLocationInWindow(location);
+            int layoutTop = location[1] + textView.getTotalPaddingTop() - textView.getScrollY();
+            int top = location[1] + textView.getTotalPaddingTop();
+            int bottom = location[1] + textView.getHeight() - textView.getTotalPaddingBottom();
+            ViewParent parent = textView.getParent();
+            while (parent instanceof View) {
+                View view = (View) parent;
+                view.getLocationInWindow(location);
+                top = Math.max(top, location[1]);
+                bottom = Math.min(bottom, location[1] + view.getHeight());
+                parent = view.getParent();
+            }
+            viewportTop = top - layoutTop;
+            viewportBottom = bottom - layoutTop;
+        }
+
+        /**
+         * 文本变化后重新查找每张图片在文本中的位置
+         */
+        private void indexOffsets() {
+            CharSequence text = textView.getText();
+            // 渐进渲染时文本会在原来的实例上追加
+            if (text == indexedText && text.length() == indexedLength) {
+                return;
+            }
+            indexedText = text;
+            indexedLength = text.length();
+
+            Map<Drawable, Integer> offsets = new IdentityHashMap<>();
+            if (text instanceof Spanned) {
+                Spanned spanned = (Spanned) text;
+                ImageSpan[] spans = spanned.getSpans(0, spanned.length(), ImageSpan.class);
+                for (ImageSpan span : spans) {
+                    offsets.put(span.getDrawable(), spanned.getSpanStart(span));
+                }
+            }
+            updateOffsets(pendingLoads, offsets);
+            updateOffsets(activeLoads, offsets);
+        }
+
+        private void updateOffsets(List<PendingLoad> loads, Map<Drawable, Integer> offsets) {
+            for (int i = 0; i < loads.size(); i++) {
+                PendingLoad load = loads.get(i);
+                Integer offset = offsets.get(load.imageDrawable);
+                load.offset = offset == null ? -1 : offset;
+            }
+        }
+
+        /**
+         * 图片所在的行与可见区域的距离是否在 distance 以内，找不到位置的图片总是认为在附近
+         */
+        private boolean isNear(Layout layout, PendingLoad load, int distance) {
+            if (load.offset < 0 || load.offset > layout.getText().length()) {
+                return true;
+            }
+            int line = layout.getLineForOffset(load.offset);
+            return layout.getLineBottom(line) >= viewportTop - distance
+                    && layout.getLineTop(line) <= viewportBottom + distance;
         }
     }
 
@@ -160,32 +688,50 @@ class HtmlImageGetter implements Html.ImageGetter {
     }
 
     private class ImageDrawable extends BitmapDrawable {
-        // img 标签出现的位置
+        // img 标签出现的位置，video 的首帧图片为 -1
         private final int position;
         private Drawable mDrawable;
 
+        // 在解析线程中确定，之后加载完成时在主线程读取，渐进渲染时 imageSizeList 还会继续追加
+        private final ImageSize imageSize;
+
         public ImageDrawable(int position) {
             super();
             this.position = position;
+            imageSize = (position >= 0 && imageSizeList.size() > position) ? imageSizeList.get(position) : null;
         }
 
         public int getPosition() {
             return position;
         }
 
-        public void setDrawable(Drawable drawable, boolean fitSize) {
+        /**
+         * 设置要展示的图片，并根据图片和 img 标签的宽高计算展示的尺寸
+         * @return 尺寸是否发生了变化，变化时需要重新布局
+         */
+        public boolean setDrawable(Drawable drawable, boolean fitSize) {
+            boolean traced = HtmlTrace.begin("ImageDrawable.setDrawable");
+            try {
+                return updateDrawable(drawable, fitSize);
+            } finally {
+                HtmlTrace.end(traced);
+            }
+        }
+
+        private boolean updateDrawable(Drawable drawable, boolean fitSize) {
             mDrawable = drawable;
+            Rect oldBounds = getBounds();
+            int oldWidth = oldBounds.width();
+            int oldHeight = oldBounds.height();
 
             if (mDrawable == null) {
                 setBounds(0, 0, 0, 0);
-                return;
+                return oldWidth != 0 || oldHeight != 0;
             }
 
-            int maxWidth = (imageLoader == null) ? 0 : imageLoader.getMaxWidth();
-            boolean fitWidth = imageLoader != null && imageLoader.fitWidth();
             int width, height;
             if (fitSize) { // real image
-                ImageSize imageSize = (imageSizeList.size() > position) ? imageSizeList.get(position) : null;
+                ImageSize imageSize = getImageSize();
                 if (imageSize != null && imageSize.valid()) {
                     width = dp2px(imageSize.width);
                     height = dp2px(imageSize.height);
@@ -198,6 +744,36 @@ class HtmlImageGetter implements Html.ImageGetter {
                 height = mDrawable.getIntrinsicHeight();
             }
 
+            int[] size = fitBounds(width, height);
+            width = size[0];
+            height = size[1];
+
+            mDrawable.setBounds(0, 0, width, height);
+            setBounds(0, 0, width, height);
+            return oldWidth != width || oldHeight != height;
+        }
+
+        /**
+         * 计算加载图片的目标尺寸。img 标签写明了宽高时就是最终展示的尺寸，
+         * 否则是最大宽度和屏幕高度限制的范围，0 表示不限制
+         * @return [width, height]
+         */
+        int[] getTargetSize() {
+            ImageSize imageSize = getImageSize();
+            if (imageSize != null && imageSize.valid()) {
+                return fitBounds(dp2px(imageSize.width), dp2px(imageSize.height));
+            }
+            int maxWidth = (imageLoader == null) ? 0 : imageLoader.getMaxWidth();
+            return new int[]{Math.max(maxWidth, 0), getScreenHeight()};
+        }
+
+        /**
+         * 按照最大宽度、是否适配宽度以及屏幕高度调整展示的尺寸
+         * @return [width, height]
+         */
+        private int[] fitBounds(int width, int height) {
+            int maxWidth = (imageLoader == null) ? 0 : imageLoader.getMaxWidth();
+            boolean fitWidth = imageLoader != null && imageLoader.fitWidth();
             if (width > 0 && height > 0) {
                 // too large or should fit width
                 if (maxWidth > 0 && (width > maxWidth || fitWidth)) {
@@ -210,9 +786,11 @@ class HtmlImageGetter implements Html.ImageGetter {
                     height = getScreenHeight();
                 }
             }
+            return new int[]{width, height};
+        }
 
-            mDrawable.setBounds(0, 0, width, height);
-            setBounds(0, 0, width, height);
+        private ImageSize getImageSize() {
+            return imageSize;
         }
 
         @Override
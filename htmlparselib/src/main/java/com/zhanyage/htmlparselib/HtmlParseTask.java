@@ -0,0 +1,22 @@
+package com.zhanyage.htmlparselib;
+
+/**
+ * 异步解析任务的取消令牌，取消后解析结果不会再回调，也不会再设置到 TextView 上
+ */
+public final class HtmlParseTask {
+    private volatile boolean cancelled;
+
+    HtmlParseTask() {
+    }
+
+    /**
+     * 取消解析任务，可以在任意线程调用
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
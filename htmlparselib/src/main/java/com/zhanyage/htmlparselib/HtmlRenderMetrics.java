@@ -0,0 +1,117 @@
+package com.zhanyage.htmlparselib;
+
+/**
+ * 一篇文档从解析到设置到 textView 的耗时和统计，由 {@link com.zhanyage.htmlparselib.api.HtmlMetricsListener} 回调。
+ * 耗时的单位都是纳秒
+ */
+public final class HtmlRenderMetrics {
+    int sourceLength;
+    long overrideTagsNanos;
+    long fromHtmlNanos;
+    long imageSpanNanos;
+    long videoSpanNanos;
+    long linkSpanNanos;
+    long setTextNanos;
+    int tagCount;
+    int spanCount;
+    int imageCount;
+    int videoCount;
+    int linkCount;
+
+    HtmlRenderMetrics(int sourceLength) {
+        this.sourceLength = sourceLength;
+    }
+
+    /**
+     * @return html 的长度，预解析的文档为编码后的字节数
+     */
+    public int getSourceLength() {
+        return sourceLength;
+    }
+
+    /**
+     * @return 标签重写的耗时，只有注册了自定义标签、使用 TagSoup 解析时才会重写。
+     * 没有注册自定义标签时由 htmlparse-core 一次完成解析，不经过这一步，始终为 0，解析的耗时都在 {@link #getFromHtmlNanos()} 中
+     */
+    public long getOverrideTagsNanos() {
+        return overrideTagsNanos;
+    }
+
+    /**
+     * @return 解析 html 生成 span 的耗时，命中解析缓存时为复制缓存的耗时，预解析的文档为解码的耗时
+     */
+    public long getFromHtmlNanos() {
+        return fromHtmlNanos;
+    }
+
+    /**
+     * @return 把图片替换成可以点击的 span 的耗时
+     */
+    public long getImageSpanNanos() {
+        return imageSpanNanos;
+    }
+
+    /**
+     * @return 把视频替换成可以点击的 span 的耗时
+     */
+    public long getVideoSpanNanos() {
+        return videoSpanNanos;
+    }
+
+    /**
+     * @return 把链接替换成可以点击的 span 的耗时
+     */
+    public long getLinkSpanNanos() {
+        return linkSpanNanos;
+    }
+
+    /**
+     * @return textView.setText 的耗时，渐进渲染时为追加这一段的耗时
+     */
+    public long getSetTextNanos() {
+        return setTextNanos;
+    }
+
+    /**
+     * @return 解析时遇到的开始标签个数，htmlparse-core 解析时由解析器在同一次扫描中统计；
+     * 命中解析缓存和预解析的文档没有解析 html，为 0
+     */
+    public int getTagCount() {
+        return tagCount;
+    }
+
+    /**
+     * @return 最终文本中 span 的个数
+     */
+    public int getSpanCount() {
+        return spanCount;
+    }
+
+    public int getImageCount() {
+        return imageCount;
+    }
+
+    public int getVideoCount() {
+        return videoCount;
+    }
+
+    public int getLinkCount() {
+        return linkCount;
+    }
+
+    @Override
+    public String toString() {
+        return "HtmlRenderMetrics{sourceLength=" + sourceLength
+                + ", overrideTagsNanos=" + overrideTagsNanos
+                + ", fromHtmlNanos=" + fromHtmlNanos
+                + ", imageSpanNanos=" + imageSpanNanos
+                + ", videoSpanNanos=" + videoSpanNanos
+                + ", linkSpanNanos=" + linkSpanNanos
+                + ", setTextNanos=" + setTextNanos
+                + ", tagCount=" + tagCount
+                + ", spanCount=" + spanCount
+                + ", imageCount=" + imageCount
+                + ", videoCount=" + videoCount
+                + ", linkCount=" + linkCount + '}';
+    }
+}
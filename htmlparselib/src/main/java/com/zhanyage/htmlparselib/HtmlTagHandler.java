@@ -20,42 +20,51 @@
 package com.zhanyage.htmlparselib;
 
 import android.content.Context;
-import android.graphics.Color;
 import android.graphics.Typeface;
 import android.graphics.drawable.Drawable;
 import android.text.Editable;
 import android.text.Html;
 import android.text.Layout;
 import android.text.Spannable;
+import android.text.SpannableStringBuilder;
 import android.text.Spanned;
 import android.text.TextPaint;
 import android.text.TextUtils;
 import android.text.style.AbsoluteSizeSpan;
+import android.text.style.BackgroundColorSpan;
 import android.text.style.AlignmentSpan;
 import android.text.style.BulletSpan;
 import android.text.style.ForegroundColorSpan;
 import android.text.style.LeadingMarginSpan;
+import android.text.style.RelativeSizeSpan;
 import android.text.style.StrikethroughSpan;
 import android.text.style.StyleSpan;
 import android.text.style.TypefaceSpan;
 import android.text.style.URLSpan;
 import android.text.style.UnderlineSpan;
-import android.util.Log;
 import android.widget.TextView;
 
 
+import com.zhanyage.htmlparsecore.HtmlColors;
+import com.zhanyage.htmlparsecore.HtmlDocument;
+import com.zhanyage.htmlparsecore.HtmlParser;
+import com.zhanyage.htmlparsecore.HtmlTagRewriter;
+import com.zhanyage.htmlparsecore.InlineStyle;
+import com.zhanyage.htmlparselib.api.CustomTagHandler;
 import com.zhanyage.htmlparselib.span.NumberSpan;
 import com.zhanyage.htmlparselib.span.VideoSpan;
 
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
 
-import java.lang.reflect.Field;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Stack;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 /**
  * custom html tagHandler，解析 html 的核心内容都在这里
@@ -64,32 +73,46 @@ class HtmlTagHandler implements Html.TagHandler {
 
     public static final String VIDEO_DEFAULT_IMG_TAG = "defaultImg";
 
-    private static final String UNORDERED_LIST = "HTML_TEXT_TAG_UL";
-    private static final String ORDERED_LIST = "HTML_TEXT_TAG_OL";
-    private static final String LIST_ITEM = "HTML_TEXT_TAG_LI";
-    private static final String FONT = "HTML_TEXT_TAG_FONT";
-    private static final String DIV = "HTML_TEXT_TAG_DIV";
-    private static final String SPAN = "HTML_SPAN_STYLE";
-    private static final String BSTYLE = "HTML_B_STYLE";
-    private static final String PSTYLE = "HTML_P_STYLE";
-    private static final String ASTYLE = "HTML_A_STYLE";
-    private static final String USTYLE = "HTML_U_STYLE";
-    private static final String ISTYLE = "HTML_I_STYLE";
-    private static final String IMGLABEL = "HTML_IMG_LABEL";
-    private static final String VIDEOlABEL = "HTML_VIDEO_LABEL";
-    private static final String BRLABEL = "HTML_BR_LABEL";
-
-    private static Pattern sForegroundColorPattern;
-    private static Pattern sForegroundFontSizePattern;
-    private static Pattern sRgbColorPattern;
-    private static Pattern sArgbColorPattern;
-    private static Pattern sHexColorPattern;
-    private static Pattern sTextAlignPattern;
-    private static final Map<String, Integer> sColorMap;
+    static final String UNORDERED_LIST = HtmlTagRewriter.UNORDERED_LIST;
+    static final String ORDERED_LIST = HtmlTagRewriter.ORDERED_LIST;
+    static final String LIST_ITEM = HtmlTagRewriter.LIST_ITEM;
+    static final String FONT = HtmlTagRewriter.FONT;
+    static final String DIV = HtmlTagRewriter.DIV;
+    static final String SPAN = HtmlTagRewriter.SPAN;
+    static final String BSTYLE = HtmlTagRewriter.BSTYLE;
+    static final String PSTYLE = HtmlTagRewriter.PSTYLE;
+    static final String ASTYLE = HtmlTagRewriter.ASTYLE;
+    static final String USTYLE = HtmlTagRewriter.USTYLE;
+    static final String ISTYLE = HtmlTagRewriter.ISTYLE;
+    static final String VIDEOlABEL = HtmlTagRewriter.VIDEOlABEL;
+
+    private static final int TAG_UNKNOWN = 0;
+    private static final int TAG_UNORDERED_LIST = 1;
+    private static final int TAG_ORDERED_LIST = 2;
+    private static final int TAG_LIST_ITEM = 3;
+    private static final int TAG_FONT = 4;
+    private static final int TAG_DIV = 5;
+    private static final int TAG_CODE = 6;
+    private static final int TAG_CENTER = 7;
+    private static final int TAG_STRIKE = 8;
+    private static final int TAG_SPAN = 9;
+    private static final int TAG_BOLD = 10;
+    private static final int TAG_PARAGRAPH = 11;
+    private static final int TAG_ANCHOR = 12;
+    private static final int TAG_UNDERLINE = 13;
+    private static final int TAG_ITALIC = 14;
+    private static final int TAG_VIDEO = 15;
+
+    /**
+     * 标签名（小写）到标签类型的映射，handleTag 时只需要一次查找
+     */
+    private static final Map<String, Integer> sTagIds;
 
     private Context mContext;
     private TextPaint mTextPaint;
     private Html.ImageGetter imageLoader;
+    private AttributesCapture attributesCapture;
+    private Map<String, CustomTagHandler> customTagHandlers;
 
     /**
      * Keeps track of lists (ol, ul). On bottom of Stack is the outermost list
@@ -102,19 +125,41 @@ class HtmlTagHandler implements Html.TagHandler {
      */
     private Stack<Integer> olNextIndex = new Stack<>();
 
+    /*
+     * 每种标签一个栈，记录开始标签在 output 中的位置，结束标签时直接取栈顶，
+     * 不再在 output 中放置标记 span 然后通过 getSpans 查找
+     */
+    private final MarkStack<Object> ulItems = new MarkStack<>();
+    private final MarkStack<Object> olItems = new MarkStack<>();
+    private final MarkStack<Object> codes = new MarkStack<>();
+    private final MarkStack<Object> centers = new MarkStack<>();
+    private final MarkStack<Object> strikes = new MarkStack<>();
+    private final MarkStack<Object> bolds = new MarkStack<>();
+    private final MarkStack<Object> underlines = new MarkStack<>();
+    private final MarkStack<Object> italics = new MarkStack<>();
+    private final MarkStack<String> hrefs = new MarkStack<>();
+    private final MarkStack<Layout.Alignment> blocks = new MarkStack<>();
+    private final MarkStack<InlineStyle> foregrounds = new MarkStack<>();
+    private final MarkStack<Font> fonts = new MarkStack<>();
+
     private static final int indent = 10;
     private static final int listItemIndent = indent * 2;
     private static final BulletSpan bullet = new BulletSpan(indent);
 
     void setTextView(TextView textView) {
         mContext = textView.getContext().getApplicationContext();
-        mTextPaint = textView.getPaint();
+        // 拷贝一份 paint，解析可能在后台线程进行
+        mTextPaint = new TextPaint(textView.getPaint());
     }
 
     void setImageGetter(Html.ImageGetter imageLoader) {
         this.imageLoader = imageLoader;
     }
 
+    void setCustomTagHandlers(Map<String, CustomTagHandler> customTagHandlers) {
+        this.customTagHandlers = customTagHandlers;
+    }
+
     /*
      * Newer versions of the Android SDK's {@link Html.TagHandler} handles &lt;ul&gt; and &lt;li&gt;
      * tags itself which means they never get delegated to this class. We want to handle the tags
@@ -126,361 +171,381 @@ class HtmlTagHandler implements Html.TagHandler {
      * @see <a href="https://github.com/android/platform_frameworks_base/commit/8b36c0bbd1503c61c111feac939193c47f812190">Specific Android SDK Commit</a>
      */
     static {
-        sColorMap = new HashMap<>();
-        sColorMap.put("darkgray", 0xFFA9A9A9);
-        sColorMap.put("gray", 0xFF808080);
-        sColorMap.put("lightgray", 0xFFD3D3D3);
-        sColorMap.put("darkgrey", 0xFFA9A9A9);
-        sColorMap.put("grey", 0xFF808080);
-        sColorMap.put("lightgrey", 0xFFD3D3D3);
-        sColorMap.put("green", 0xFF008000);
+        sTagIds = new HashMap<>();
+        putTagId(UNORDERED_LIST, TAG_UNORDERED_LIST);
+        putTagId(ORDERED_LIST, TAG_ORDERED_LIST);
+        putTagId(LIST_ITEM, TAG_LIST_ITEM);
+        putTagId(FONT, TAG_FONT);
+        putTagId(DIV, TAG_DIV);
+        putTagId("code", TAG_CODE);
+        putTagId("center", TAG_CENTER);
+        putTagId("s", TAG_STRIKE);
+        putTagId("strike", TAG_STRIKE);
+        putTagId(SPAN, TAG_SPAN);
+        putTagId(BSTYLE, TAG_BOLD);
+        putTagId(PSTYLE, TAG_PARAGRAPH);
+        putTagId(ASTYLE, TAG_ANCHOR);
+        putTagId(USTYLE, TAG_UNDERLINE);
+        putTagId(ISTYLE, TAG_ITALIC);
+        putTagId(VIDEOlABEL, TAG_VIDEO);
+    }
+
+    private static void putTagId(String tag, int tagId) {
+        sTagIds.put(tag, tagId);
+        sTagIds.put(tag.toLowerCase(Locale.US), tagId);
     }
 
 
     String overrideTags(String html) {
-        if (html == null) {
-            return null;
-        }
-
-        // Remove useless div tags
-        html = html.replaceAll("<div>(<img\\s+[^>]*>)</div>", "$1");
-
-        // Wrap HTML tags to prevent parsing custom tags error
-        html = "<html>" + html + "</html>";
-
-        html = html.replace("<ul", "<" + UNORDERED_LIST);
-        html = html.replace("</ul>", "</" + UNORDERED_LIST + ">");
-        html = html.replace("<ol", "<" + ORDERED_LIST);
-        html = html.replace("</ol>", "</" + ORDERED_LIST + ">");
-        html = html.replace("<li", "<" + LIST_ITEM);
-        html = html.replace("</li>", "</" + LIST_ITEM + ">");
-        html = html.replace("<font", "<" + FONT);
-        html = html.replace("</font>", "</" + FONT + ">");
-        html = html.replace("<div", "<" + DIV);
-        html = html.replace("</div>", "</" + DIV + ">");
-        html = html.replace("<span", "<" + SPAN);
-        html = html.replace("</span>", "</" + SPAN + ">");
-
-        //这个地方是防止 <img 标签被错误替换了
-        html = html.replace("<br", "<" + BRLABEL);
-        html = html.replace("<b", "<" + BSTYLE);
-        html = html.replace("<" + BRLABEL, "<br");
-
-        html = html.replace("</b>", "</" + BSTYLE + ">");
-        html = html.replace("<p", "<" + PSTYLE);
-        html = html.replace("</p>", "</" + PSTYLE + ">");
-        html = html.replace("<a", "<" + ASTYLE);
-        html = html.replace("</a>", "</" + ASTYLE + ">");
-        html = html.replace("<u", "<" + USTYLE);
-        html = html.replace("</u>", "</" + USTYLE + ">");
-
-        //这个地方是防止 <img 标签被错误替换了
-        html = html.replace("<img", "<" + IMGLABEL);
-        html = html.replace("<i", "<" + ISTYLE);
-        html = html.replace("<" + IMGLABEL, "<img");
-        html = html.replace("<video", "<" + VIDEOlABEL);
-
-        html = html.replace("</i>", "</" + ISTYLE + ">");
-        html = html.replace("\n", "<br>");
-
-        return html;
+        return HtmlTagRewriter.rewrite(html);
     }
 
     @Override
     public void handleTag(final boolean opening, final String tag, Editable output, final XMLReader xmlReader) {
-        if (opening) {
-            // opening tag
-            if (tag.equalsIgnoreCase(UNORDERED_LIST)) {
-                lists.push(tag);
-            } else if (tag.equalsIgnoreCase(ORDERED_LIST)) {
-                lists.push(tag);
-                olNextIndex.push(1);
-            } else if (tag.equalsIgnoreCase(LIST_ITEM)) {
+        Attributes attributes = opening ? getAttributes(xmlReader) : null;
+        int tagId = getTagId(tag);
+        if (tagId == TAG_UNKNOWN) {
+            handleCustomTag(opening, tag, output, attributes);
+        } else if (opening) {
+            handleStartTag(tagId, output, attributes);
+        } else {
+            handleEndTag(tagId, output);
+        }
+    }
+
+    private void handleStartTag(int tagId, Editable output, Attributes attributes) {
+        switch (tagId) {
+            case TAG_UNORDERED_LIST:
+                lists.push(UNORDERED_LIST);
+                break;
+            case TAG_ORDERED_LIST:
+                lists.push(ORDERED_LIST);
+                olNextIndex.push(getListStart(attributes));
+                break;
+            case TAG_LIST_ITEM:
                 if (output.length() > 0 && output.charAt(output.length() - 1) != '\n') {
                     output.append("\n");
                 }
                 if (!lists.isEmpty()) {
                     String parentList = lists.peek();
                     if (parentList.equalsIgnoreCase(ORDERED_LIST)) {
-                        start(output, new Ol());
+                        start(output, olItems);
                         olNextIndex.push(olNextIndex.pop() + 1);
                     } else if (parentList.equalsIgnoreCase(UNORDERED_LIST)) {
-                        start(output, new Ul());
+                        start(output, ulItems);
                     }
                 }
-            } else if (tag.equalsIgnoreCase(FONT)) {
-                startFont(output, xmlReader);
-            } else if (tag.equalsIgnoreCase(DIV)) {
+                break;
+            case TAG_FONT:
+                startFont(output, attributes);
+                break;
+            case TAG_DIV:
                 handleDiv(output);
-            } else if (tag.equalsIgnoreCase("code")) {
-                start(output, new Code());
-            } else if (tag.equalsIgnoreCase("center")) {
-                start(output, new Center());
-            } else if (tag.equalsIgnoreCase("s") || tag.equalsIgnoreCase("strike")) {
-                start(output, new Strike());
-            } else if (tag.equalsIgnoreCase("tr")) {
-                start(output, new Tr());
-            } else if (tag.equalsIgnoreCase("th")) {
-                start(output, new Th());
-            } else if (tag.equalsIgnoreCase("td")) {
-                start(output, new Td());
-            } else if (tag.equalsIgnoreCase(SPAN)) {
-                startSpan(output, xmlReader);
-            } else if (tag.equalsIgnoreCase(BSTYLE)) {
-                startForNative(output, new Bold());
-                startSpan(output, xmlReader);
-            } else if (tag.equalsIgnoreCase(PSTYLE)) {
-                startBlockElement(output, xmlReader, getMarginParagraph());
-                startSpan(output, xmlReader);
-            } else if (tag.equalsIgnoreCase(ASTYLE)) {
-                startA(output, xmlReader);
-                startSpan(output, xmlReader);
-            } else if (tag.equalsIgnoreCase(USTYLE)) {
-                startForNative(output, new Underline());
-                startSpan(output, xmlReader);
-            } else if (tag.equalsIgnoreCase(ISTYLE)) {
-                startForNative(output, new Italic());
-                startSpan(output, xmlReader);
-            } else if (tag.equalsIgnoreCase(VIDEOlABEL)) {
-                startVideo(output, xmlReader, imageLoader);
-            }
-        } else {
-            // closing tag
-            if (tag.equalsIgnoreCase(UNORDERED_LIST)) {
+                break;
+            case TAG_CODE:
+                start(output, codes);
+                break;
+            case TAG_CENTER:
+                start(output, centers);
+                break;
+            case TAG_STRIKE:
+                start(output, strikes);
+                break;
+            case TAG_SPAN:
+                startSpan(output, attributes);
+                break;
+            case TAG_BOLD:
+                start(output, bolds);
+                startSpan(output, attributes);
+                break;
+            case TAG_PARAGRAPH:
+                startBlockElement(output, attributes, getMarginParagraph());
+                startSpan(output, attributes);
+                break;
+            case TAG_ANCHOR:
+                startA(output, attributes);
+                startSpan(output, attributes);
+                break;
+            case TAG_UNDERLINE:
+                start(output, underlines);
+                startSpan(output, attributes);
+                break;
+            case TAG_ITALIC:
+                start(output, italics);
+                startSpan(output, attributes);
+                break;
+            case TAG_VIDEO:
+                startVideo(output, attributes, imageLoader);
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void handleEndTag(int tagId, Editable output) {
+        switch (tagId) {
+            case TAG_UNORDERED_LIST:
                 lists.pop();
-            } else if (tag.equalsIgnoreCase(ORDERED_LIST)) {
+                break;
+            case TAG_ORDERED_LIST:
                 lists.pop();
                 olNextIndex.pop();
-            } else if (tag.equalsIgnoreCase(LIST_ITEM)) {
-                if (!lists.isEmpty()) {
-                    if (lists.peek().equalsIgnoreCase(UNORDERED_LIST)) {
-                        if (output.length() > 0 && output.charAt(output.length() - 1) != '\n') {
-                            output.append("\n");
-                        }
-                        // Nested BulletSpans increases distance between bullet and text, so we must prevent it.
-                        int bulletMargin = indent;
-                        if (lists.size() > 1) {
-                            bulletMargin = indent - bullet.getLeadingMargin(true);
-                            if (lists.size() > 2) {
-                                // This get's more complicated when we add a LeadingMarginSpan into the same line:
-                                // we have also counter it's effect to BulletSpan
-                                bulletMargin -= (lists.size() - 2) * listItemIndent;
-                            }
-                        }
-                        BulletSpan newBullet = new BulletSpan(bulletMargin);
-                        end(output, Ul.class, false,
-                                new LeadingMarginSpan.Standard(listItemIndent * (lists.size() - 1)),
-                                newBullet);
-                    } else if (lists.peek().equalsIgnoreCase(ORDERED_LIST)) {
-                        if (output.length() > 0 && output.charAt(output.length() - 1) != '\n') {
-                            output.append("\n");
-                        }
-                        int numberMargin = listItemIndent * (lists.size() - 1);
-                        if (lists.size() > 2) {
-                            // Same as in ordered lists: counter the effect of nested Spans
-                            numberMargin -= (lists.size() - 2) * listItemIndent;
-                        }
-                        NumberSpan numberSpan = new NumberSpan(mTextPaint, olNextIndex.lastElement() - 1);
-                        end(output, Ol.class, false,
-                                new LeadingMarginSpan.Standard(numberMargin),
-                                numberSpan);
-                    }
-                }
-            } else if (tag.equalsIgnoreCase(FONT)) {
+                break;
+            case TAG_LIST_ITEM:
+                endListItem(output);
+                break;
+            case TAG_FONT:
                 endFont(output);
-            } else if (tag.equalsIgnoreCase(DIV)) {
+                break;
+            case TAG_DIV:
                 handleDiv(output);
-            } else if (tag.equalsIgnoreCase("code")) {
-                end(output, Code.class, false, new TypefaceSpan("monospace"));
-            } else if (tag.equalsIgnoreCase("center")) {
-                end(output, Center.class, true, new AlignmentSpan.Standard(Layout.Alignment.ALIGN_CENTER));
-            } else if (tag.equalsIgnoreCase("s") || tag.equalsIgnoreCase("strike")) {
-                end(output, Strike.class, false, new StrikethroughSpan());
-            } else if (tag.equalsIgnoreCase("tr")) {
-                end(output, Tr.class, false);
-            } else if (tag.equalsIgnoreCase("th")) {
-                end(output, Th.class, false);
-            } else if (tag.equalsIgnoreCase("td")) {
-                end(output, Td.class, false);
-            } else if (tag.equalsIgnoreCase(SPAN)) {
+                break;
+            case TAG_CODE:
+                end(output, codes, false, new TypefaceSpan("monospace"));
+                break;
+            case TAG_CENTER:
+                end(output, centers, true, new AlignmentSpan.Standard(Layout.Alignment.ALIGN_CENTER));
+                break;
+            case TAG_STRIKE:
+                end(output, strikes, false, new StrikethroughSpan());
+                break;
+            case TAG_SPAN:
                 endSpan(output);
-            } else if (tag.equalsIgnoreCase(BSTYLE)) {
+                break;
+            case TAG_BOLD:
                 endSpan(output);
-                endForNative(output, Bold.class, new StyleSpan(Typeface.BOLD));
-            } else if (tag.equalsIgnoreCase(PSTYLE)) {
+                end(output, bolds, false, new StyleSpan(Typeface.BOLD));
+                break;
+            case TAG_PARAGRAPH:
                 endSpan(output);
-                endBlockElement(output);
-            } else if (tag.equalsIgnoreCase(ASTYLE)) {
+                endBlockElement(output, getMarginParagraph());
+                break;
+            case TAG_ANCHOR:
                 endSpan(output);
                 endA(output);
-            } else if (tag.equalsIgnoreCase(USTYLE)) {
+                break;
+            case TAG_UNDERLINE:
                 endSpan(output);
-                endForNative(output, Underline.class, new UnderlineSpan());
-            } else if (tag.equalsIgnoreCase(ISTYLE)) {
+                end(output, underlines, false, new UnderlineSpan());
+                break;
+            case TAG_ITALIC:
                 endSpan(output);
-                endForNative(output, Italic.class, new StyleSpan(Typeface.ITALIC));
-            }
+                end(output, italics, false, new StyleSpan(Typeface.ITALIC));
+                break;
+            default:
+                break;
         }
     }
 
-    private void startSpan(Editable output, XMLReader xmlReader) {
-        Map<String, String> attributes = getAttributes(xmlReader);
-        String style = attributes.get("style");
-        if (style != null) {
-            Foreground object = new Foreground();
-            Matcher mColor = getForegroundColorPattern().matcher(style);
-            if (mColor.find()) {
-                int c = getHtmlColor(mColor.group(1));
-                if (c != -1) {
-//                    int len = output.length();
-                    object.setmForegroundColor(c);
-//                    output.setSpan(new Foreground(c), len, len, Spannable.SPAN_INCLUSIVE_EXCLUSIVE);
-                }
-            }
-            Matcher mSize = getsForegroundFontSizePattern().matcher(style);
-            if (mSize.find()) {
-                try {
-                    int s = Integer.parseInt(mSize.group(1));
-                    object.setmForegroundSize(s);
-                } catch (NumberFormatException e) {
-                    //log
-                    Log.e("HtmlTagHandler", "start span is error", e);
-                }
-            }
-            int len = output.length();
-            output.setSpan(object, len, len, Spannable.SPAN_MARK_MARK);
+    private void endListItem(Editable output) {
+        if (lists.isEmpty()) {
+            return;
         }
-    }
-
-
-    private void endSpan(Editable output) {
-        int len = output.length();
-        Object obj = getSpanLast(output, Foreground.class);
-        int where = output.getSpanStart(obj);
-
-        output.removeSpan(obj);
-
-        if (where != len) {
-            Foreground f = (Foreground) obj;
-            if (f == null)
-                return;
-            int color = f.getmForegroundColor();
-            int size = f.mForegroundSize;
-
-            if (color != -1) {
-                output.setSpan(new ForegroundColorSpan(color | 0xFF000000), where, len, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        if (lists.peek().equalsIgnoreCase(UNORDERED_LIST)) {
+            if (output.length() > 0 && output.charAt(output.length() - 1) != '\n') {
+                output.append("\n");
             }
-            if (size > 0) {
-                output.setSpan(new AbsoluteSizeSpan(size, true), where, len, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+            end(output, ulItems, false, newBulletSpans(lists.size()));
+        } else if (lists.peek().equalsIgnoreCase(ORDERED_LIST)) {
+            if (output.length() > 0 && output.charAt(output.length() - 1) != '\n') {
+                output.append("\n");
             }
+            end(output, olItems, false, newNumberSpans(mTextPaint, olNextIndex.lastElement() - 1, lists.size()));
         }
     }
 
-    private static void startVideo(Editable text, XMLReader xmlReader, Html.ImageGetter img) {
-        Map<String, String> attributes = getAttributes(xmlReader);
-        String videoUrl = attributes.get("src");
-        String imgUrl = attributes.get("poster");
-        Drawable d = null;
-
-        if (img != null) {
-            if (TextUtils.isEmpty(imgUrl)) {
-                d = img.getDrawable("VIDEO_IMG_TAG" + VIDEO_DEFAULT_IMG_TAG);
-            } else {
-                d = img.getDrawable("VIDEO_IMG_TAG" + imgUrl);
+    /**
+     * 无序列表项的缩进和圆点
+     * @param listDepth 列表的嵌套层数，从 1 开始
+     */
+    static Object[] newBulletSpans(int listDepth) {
+        // Nested BulletSpans increases distance between bullet and text, so we must prevent it.
+        int bulletMargin = indent;
+        if (listDepth > 1) {
+            bulletMargin = indent - bullet.getLeadingMargin(true);
+            if (listDepth > 2) {
+                // This get's more complicated when we add a LeadingMarginSpan into the same line:
+                // we have also counter it's effect to BulletSpan
+                bulletMargin -= (listDepth - 2) * listItemIndent;
             }
         }
+        BulletSpan newBullet = new BulletSpan(bulletMargin);
+        return new Object[]{new LeadingMarginSpan.Standard(listItemIndent * (listDepth - 1)), newBullet};
+    }
 
-        if (d == null) {
-            d = img.getDrawable("VIDEO_IMG_TAG" + VIDEO_DEFAULT_IMG_TAG);
-            if (d != null)
-                d.setBounds(0, 0, d.getIntrinsicWidth(), d.getIntrinsicHeight());
+    /**
+     * 有序列表项的缩进和序号
+     * @param listDepth 列表的嵌套层数，从 1 开始
+     */
+    static Object[] newNumberSpans(TextPaint textPaint, int number, int listDepth) {
+        int numberMargin = listItemIndent * (listDepth - 1);
+        if (listDepth > 2) {
+            // Same as in ordered lists: counter the effect of nested Spans
+            numberMargin -= (listDepth - 2) * listItemIndent;
         }
-
-        int len = text.length();
-        text.append("\uFFFC");
-
-        VideoSpan imageAndVideoSpan = new VideoSpan(d, imgUrl);
-        imageAndVideoSpan.setResourceUrl(videoUrl);
-
-        text.setSpan(imageAndVideoSpan, len, text.length(),
-                Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
+        NumberSpan numberSpan = new NumberSpan(textPaint, number);
+        return new Object[]{new LeadingMarginSpan.Standard(numberMargin), numberSpan};
     }
 
-    private static class Ul {
+    /**
+     * 没有注册自定义标签时可以使用 htmlparse-core 的解析器，不再经过 TagSoup
+     */
+    boolean hasCustomTagHandlers() {
+        return customTagHandlers != null && !customTagHandlers.isEmpty();
     }
 
-    private static class Ol {
+    /**
+     * 把 htmlparse-core 解析出的文档转成 span，字体大小、列表、图片的处理和 TagSoup 解析时一致
+     */
+    SpannableStringBuilder toSpanned(HtmlDocument document) {
+        float density = mContext.getResources().getDisplayMetrics().density;
+        return SpanAdapter.toSpanned(document, imageLoader, mTextPaint, px2dp(mTextPaint.getTextSize(), density));
     }
 
-    private static class Code {
+    /**
+     * 交给外部注册的 {@link CustomTagHandler} 处理内置标签以外的标签
+     */
+    private void handleCustomTag(boolean opening, String tag, Editable output, Attributes attributes) {
+        if (customTagHandlers == null || customTagHandlers.isEmpty()) {
+            return;
+        }
+        CustomTagHandler handler = customTagHandlers.get(tag);
+        if (handler == null) {
+            handler = customTagHandlers.get(tag.toLowerCase(Locale.US));
+        }
+        if (handler != null) {
+            handler.handleTag(opening, tag, output, attributes);
+        }
     }
 
-    private static class Center {
+    private static int getTagId(String tag) {
+        Integer tagId = sTagIds.get(tag);
+        if (tagId == null) {
+            // TagSoup 一般会把标签名转为小写，这里兼容其他大小写
+            tagId = sTagIds.get(tag.toLowerCase(Locale.US));
+        }
+        return tagId == null ? TAG_UNKNOWN : tagId;
     }
 
-    private static class Strike {
+    private void startSpan(Editable output, Attributes attributes) {
+        // 没有 style 时也要入栈，保证和 endSpan 一一对应
+        foregrounds.push(output.length(), InlineStyle.parse(getValue(attributes, "style")));
     }
 
-    private static class Tr {
-    }
 
-    private static class Th {
-    }
+    private void endSpan(Editable output) {
+        if (foregrounds.isEmpty()) {
+            return;
+        }
+        int len = output.length();
+        int where = foregrounds.start();
+        InlineStyle style = foregrounds.mark();
+        foregrounds.pop();
 
-    private static class Td {
+        if (where == len || style == null) {
+            return;
+        }
+        if (style.hasColor()) {
+            output.setSpan(new ForegroundColorSpan(style.getColor() | 0xFF000000), where, len,
+                    Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        }
+        if (style.hasBackgroundColor()) {
+            output.setSpan(new BackgroundColorSpan(style.getBackgroundColor()), where, len,
+                    Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        }
+        if (style.getFontSize() > 0) {
+            output.setSpan(new AbsoluteSizeSpan(style.getFontSize(), true), where, len,
+                    Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        } else if (style.getFontScale() > 0) {
+            output.setSpan(new RelativeSizeSpan(style.getFontScale()), where, len, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        }
+        if (style.isBold()) {
+            output.setSpan(new StyleSpan(Typeface.BOLD), where, len, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        }
+        if ((style.getTextDecoration() & InlineStyle.DECORATION_UNDERLINE) != 0) {
+            output.setSpan(new UnderlineSpan(), where, len, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        }
+        if ((style.getTextDecoration() & InlineStyle.DECORATION_LINE_THROUGH) != 0) {
+            output.setSpan(new StrikethroughSpan(), where, len, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        }
     }
 
-    private static class Bold {
-    }
+    private static void startVideo(Editable text, Attributes attributes, Html.ImageGetter img) {
+        VideoSpan imageAndVideoSpan = newVideoSpan(img, getValue(attributes, "poster"), getValue(attributes, "src"));
 
-    private static class Underline {
-    }
+        int len = text.length();
+        text.append("\uFFFC");
 
-    private static class Italic {
+        text.setSpan(imageAndVideoSpan, len, text.length(),
+                Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
     }
 
-    private static class Newline {
-        private int mNumNewlines;
+    /**
+     * 创建视频的 span，没有 poster 时使用默认的首帧图片
+     * @param imgUrl 视频的 poster
+     * @param videoUrl 视频的 src
+     */
+    static VideoSpan newVideoSpan(Html.ImageGetter img, String imgUrl, String videoUrl) {
+        Drawable d = null;
 
-        public Newline(int numNewlines) {
-            mNumNewlines = numNewlines;
+        if (img != null) {
+            if (TextUtils.isEmpty(imgUrl)) {
+                d = img.getDrawable(HtmlImageGetter.VIDEO_IMG_TAG + VIDEO_DEFAULT_IMG_TAG);
+            } else {
+                d = img.getDrawable(HtmlImageGetter.VIDEO_IMG_TAG + imgUrl);
+            }
         }
-    }
-
-    private static class Alignment {
-        private Layout.Alignment mAlignment;
 
-        public Alignment(Layout.Alignment alignment) {
-            mAlignment = alignment;
+        if (d == null) {
+            d = img.getDrawable(HtmlImageGetter.VIDEO_IMG_TAG + VIDEO_DEFAULT_IMG_TAG);
+            if (d != null)
+                d.setBounds(0, 0, d.getIntrinsicWidth(), d.getIntrinsicHeight());
         }
-    }
-
-    private static class Href {
-        public String mHref;
 
-        public Href(String href) {
-            mHref = href;
-        }
+        VideoSpan imageAndVideoSpan = new VideoSpan(d, imgUrl);
+        imageAndVideoSpan.setResourceUrl(videoUrl);
+        return imageAndVideoSpan;
     }
 
-    private static class Foreground {
-        private int mForegroundColor = 0;
-        private int mForegroundSize = 0;
+    /**
+     * 开始标签的栈，记录标签开始的位置以及附带的信息，结束标签时 O(1) 取出
+     */
+    private static class MarkStack<T> {
+        private int[] starts = new int[8];
+        private Object[] marks = new Object[8];
+        private int size;
+
+        void push(int start, T mark) {
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                marks = Arrays.copyOf(marks, size * 2);
+            }
+            starts[size] = start;
+            marks[size] = mark;
+            size++;
+        }
 
-        public int getmForegroundColor() {
-            return mForegroundColor;
+        boolean isEmpty() {
+            return size == 0;
         }
 
-        public void setmForegroundColor(int mForegroundColor) {
-            this.mForegroundColor = mForegroundColor;
+        /**
+         * @return 栈顶标签开始的位置
+         */
+        int start() {
+            return starts[size - 1];
         }
 
-        public int getmForegroundSize() {
-            return mForegroundSize;
+        /**
+         * @return 栈顶标签附带的信息
+         */
+        @SuppressWarnings("unchecked")
+        T mark() {
+            return (T) marks[size - 1];
         }
 
-        public void setmForegroundSize(int mForegroundSize) {
-            this.mForegroundSize = mForegroundSize;
+        void pop() {
+            marks[--size] = null;
         }
     }
 
@@ -495,68 +560,37 @@ class HtmlTagHandler implements Html.TagHandler {
     }
 
     //html 源码中的方法
-    private static void startA(Editable text, XMLReader xmlReader) {
-        Map<String, String> attributes = getAttributes(xmlReader);
-        String href = attributes.get("href");
-        Log.e("htmlTagHandler:", href);
-        startForNative(text, new Href(href));
+    private void startA(Editable text, Attributes attributes) {
+        hrefs.push(text.length(), getValue(attributes, "href"));
     }
 
     //html 源码中的方法
-    private static void endA(Editable text) {
-        Href h = getLastForNative(text, Href.class);
-        if (h != null) {
-            if (h.mHref != null) {
-                setSpanFromMark(text, h, new URLSpan((h.mHref)));
-            }
+    private void endA(Editable text) {
+        if (hrefs.isEmpty()) {
+            return;
         }
-    }
-
-    //Html 源码中的 strat 方法
-    private static void startForNative(Editable text, Object mark) {
-        int len = text.length();
-        text.setSpan(mark, len, len, Spannable.SPAN_INCLUSIVE_EXCLUSIVE);
-    }
-
-    //html 源码中的 end 方法
-    private static void endForNative(Editable text, Class kind, Object repl) {
+        int where = hrefs.start();
+        String href = hrefs.mark();
+        hrefs.pop();
         int len = text.length();
-        Object obj = getLast(text, kind);
-        if (obj != null) {
-            setSpanFromMark(text, obj, repl);
+        if (href != null && where != len) {
+            text.setSpan(new URLSpan(href), where, len, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
         }
     }
 
     //Html 源码中的方法
-    private static void startBlockElement(Editable text, XMLReader xmlReader, int margin) {
-        Map<String, String> attributes = getAttributes(xmlReader);
-        String style = attributes.get("style");
-        final int len = text.length();
+    private void startBlockElement(Editable text, Attributes attributes, int margin) {
+        String style = getValue(attributes, "style");
         if (margin > 0) {
             appendNewlines(text, margin);
-            startForNative(text, new Newline(margin));
-        }
-
-        if (style != null) {
-            Matcher m = getTextAlignPattern().matcher(style);
-            if (m.find()) {
-                String alignment = m.group(1);
-                if (alignment.equalsIgnoreCase("start")) {
-                    startForNative(text, new Alignment(Layout.Alignment.ALIGN_NORMAL));
-                } else if (alignment.equalsIgnoreCase("center")) {
-                    startForNative(text, new Alignment(Layout.Alignment.ALIGN_CENTER));
-                } else if (alignment.equalsIgnoreCase("end")) {
-                    startForNative(text, new Alignment(Layout.Alignment.ALIGN_OPPOSITE));
-                }
-            }
         }
-    }
 
-    private static Pattern getTextAlignPattern() {
-        if (sTextAlignPattern == null) {
-            sTextAlignPattern = Pattern.compile("(?:\\s+|\\A)text-align\\s*:\\s*(\\S*)\\b");
+        Layout.Alignment alignment = null;
+        InlineStyle inlineStyle = InlineStyle.parse(style);
+        if (inlineStyle != null && inlineStyle.getTextAlign() != InlineStyle.NO_ALIGN) {
+            alignment = SpanAdapter.toAlignment(inlineStyle.getTextAlign());
         }
-        return sTextAlignPattern;
+        blocks.push(text.length(), alignment);
     }
 
     private static void appendNewlines(Editable text, int minNewline) {
@@ -577,39 +611,43 @@ class HtmlTagHandler implements Html.TagHandler {
     }
 
     //html 源码中的方法
-    private static void endBlockElement(Editable text) {
-        Newline n = getLastForNative(text, Newline.class);
-        if (n != null) {
-            appendNewlines(text, n.mNumNewlines);
-            text.removeSpan(n);
+    private void endBlockElement(Editable text, int margin) {
+        if (blocks.isEmpty()) {
+            return;
+        }
+        if (margin > 0) {
+            appendNewlines(text, margin);
         }
 
-        Alignment a = getLastForNative(text, Alignment.class);
-        if (a != null) {
-            setSpanFromMark(text, a, new AlignmentSpan.Standard(a.mAlignment));
+        int where = blocks.start();
+        Layout.Alignment alignment = blocks.mark();
+        blocks.pop();
+        int len = text.length();
+        if (alignment != null && where != len) {
+            text.setSpan(new AlignmentSpan.Standard(alignment), where, len, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
         }
     }
 
     /**
-     * Mark the opening tag by using private classes
+     * Mark the opening tag by pushing its position
      */
-    private void start(Editable output, Object mark) {
-        int len = output.length();
-        output.setSpan(mark, len, len, Spannable.SPAN_MARK_MARK);
+    private static void start(Editable output, MarkStack<Object> stack) {
+        stack.push(output.length(), null);
     }
 
     /**
      * Modified from {@link Html}
      */
-    private void end(Editable output, Class kind, boolean paragraphStyle, Object... replaces) {
-        Object obj = getLast(output, kind);
+    private static void end(Editable output, MarkStack<Object> stack, boolean paragraphStyle, Object... replaces) {
+        if (stack.isEmpty()) {
+            return;
+        }
         // start of the tag
-        int where = output.getSpanStart(obj);
+        int where = stack.start();
+        stack.pop();
         // end of the tag
         int len = output.length();
 
-        output.removeSpan(obj);
-
         if (where != len) {
             int thisLen = len;
             // paragraph styles like AlignmentSpan need to end with a new line!
@@ -623,28 +661,28 @@ class HtmlTagHandler implements Html.TagHandler {
         }
     }
 
-    private void startFont(Editable output, XMLReader xmlReader) {
-        int len = output.length();
-        Map<String, String> attributes = getAttributes(xmlReader);
-        String color = attributes.get("color");
-        String size = attributes.get("size");
-        output.setSpan(new Font(color, size), len, len, Spannable.SPAN_MARK_MARK);
+    private void startFont(Editable output, Attributes attributes) {
+        String color = getValue(attributes, "color");
+        String size = getValue(attributes, "size");
+        fonts.push(output.length(), new Font(color, size));
     }
 
     private void endFont(Editable output) {
+        if (fonts.isEmpty()) {
+            return;
+        }
         int len = output.length();
-        Object obj = getLast(output, Font.class);
-        int where = output.getSpanStart(obj);
-
-        output.removeSpan(obj);
+        int where = fonts.start();
+        Font f = fonts.mark();
+        fonts.pop();
 
         if (where != len) {
-            Font f = (Font) obj;
-            int color = parseColor(f.color);
+            long color = HtmlColors.parseFontColor(f.color);
             int size = parseSize(f.size);
 
-            if (color != -1) {
-                output.setSpan(new ForegroundColorSpan(color | 0xFF000000), where, len, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+            if (color != HtmlColors.NONE) {
+                output.setSpan(new ForegroundColorSpan((int) color | 0xFF000000), where, len,
+                        Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
             }
             if (size > 0) {
                 output.setSpan(new AbsoluteSizeSpan(size, true), where, len, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
@@ -664,203 +702,126 @@ class HtmlTagHandler implements Html.TagHandler {
         }
     }
 
-    private static HashMap<String, String> getAttributes(XMLReader xmlReader) {
-        HashMap<String, String> attributes = new HashMap<>();
-        try {
-            Field elementField = xmlReader.getClass().getDeclaredField("theNewElement");
-            elementField.setAccessible(true);
-            Object element = elementField.get(xmlReader);
-            Field attrsField = element.getClass().getDeclaredField("theAtts");
-            attrsField.setAccessible(true);
-            Object attrs = attrsField.get(element);
-            Field dataField = attrs.getClass().getDeclaredField("data");
-            dataField.setAccessible(true);
-            String[] data = (String[]) dataField.get(attrs);
-            Field lengthField = attrs.getClass().getDeclaredField("length");
-            lengthField.setAccessible(true);
-            int len = (Integer) lengthField.get(attrs);
-
-            /**
-             * MSH: Look for supported attributes and add to hash map.
-             * This is as tight as things can get :)
-             * The data index is "just" where the keys and values are stored.
-             */
-            for (int i = 0; i < len; i++) {
-                attributes.put(data[i * 5 + 1], data[i * 5 + 4]);
-            }
-        } catch (Exception ignored) {
-        }
-        return attributes;
-    }
-
-    //html 源码中的方法
-    private static <T> T getLastForNative(Spanned text, Class<T> kind) {
-        /*
-         * This knows that the last returned object from getSpans()
-         * will be the most recently added.
-         */
-        T[] objs = text.getSpans(0, text.length(), kind);
-
-        if (objs.length == 0) {
+    /**
+     * 获取当前开始标签的属性。第一次调用时把 TagSoup 的 ContentHandler 替换为 {@link AttributesCapture}，
+     * 之后每个标签的属性都在 startElement 时记录下来，不需要再反射读取 TagSoup 的私有字段。
+     * 由于 html 被包裹在 &lt;html&gt; 中，第一次调用一定是 html 标签，不会丢失需要的属性
+     */
+    private Attributes getAttributes(XMLReader xmlReader) {
+        if (attributesCapture == null) {
+            attributesCapture = new AttributesCapture(xmlReader.getContentHandler());
+            xmlReader.setContentHandler(attributesCapture);
             return null;
-        } else {
-            return objs[objs.length - 1];
         }
+        return attributesCapture.attributes;
     }
 
-    //html 源码中的方法
-    private static void setSpanFromMark(Spannable text, Object mark, Object... spans) {
-        int where = text.getSpanStart(mark);
-        text.removeSpan(mark);
-        int len = text.length();
-        if (where != len) {
-            for (Object span : spans) {
-                text.setSpan(span, where, len, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
-            }
-        }
+    private static String getValue(Attributes attributes, String name) {
+        return attributes == null ? null : attributes.getValue(name);
     }
 
     /**
-     * Get last marked position of a specific tag kind (private class)
+     * 有序列表的起始序号，对应 ol 标签的 start 属性，没有时为 1
      */
-    private static Object getLast(Editable text, Class kind) {
-        Object[] objs = text.getSpans(0, text.length(), kind);
-        if (objs.length == 0) {
-            return null;
-        } else {
-            for (int i = objs.length; i > 0; i--) {
-                if (text.getSpanFlags(objs[i - 1]) == Spannable.SPAN_MARK_MARK) {
-                    return objs[i - 1];
-                }
-            }
-            return null;
+    private static int getListStart(Attributes attributes) {
+        String start = getValue(attributes, "start");
+        if (start == null) {
+            return 1;
         }
-    }
-
-    private static int parseColor(String colorString) {
         try {
-            return Color.parseColor(colorString);
-        } catch (Exception ignored) {
-            return -1;
+            return Integer.parseInt(start.trim());
+        } catch (NumberFormatException e) {
+            return 1;
         }
     }
 
     /**
-     * dpValue
+     * 代理 Html 内部的 ContentHandler，在 startElement 回调中记录当前标签的属性
      */
-    private int parseSize(String size) {
-        int s;
-        try {
-            s = Integer.parseInt(size);
-        } catch (NumberFormatException ignored) {
-            return 0;
-        }
-
-        s = Math.max(s, 1);
-        s = Math.min(s, 7);
+    private static class AttributesCapture implements ContentHandler {
+        private final ContentHandler delegate;
+        private Attributes attributes;
 
-        int baseSize = px2dp(mTextPaint.getTextSize());
+        AttributesCapture(ContentHandler delegate) {
+            this.delegate = delegate;
+        }
 
-        return (s - 3) + baseSize;
-    }
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+            attributes = atts;
+            try {
+                delegate.startElement(uri, localName, qName, atts);
+            } finally {
+                attributes = null;
+            }
+        }
 
-    private int px2dp(float pxValue) {
-        float density = mContext.getResources().getDisplayMetrics().density;
-        return (int) (pxValue / density + 0.5f);
-    }
+        @Override
+        public void endElement(String uri, String localName, String qName) throws SAXException {
+            delegate.endElement(uri, localName, qName);
+        }
 
-    private static <T> T getSpanLast(Spanned text, Class<T> kind) {
-        /*
-         * This knows that the last returned object from getSpans()
-         * will be the most recently added.
-         */
-        T[] objs = text.getSpans(0, text.length(), kind);
+        @Override
+        public void characters(char[] ch, int start, int length) throws SAXException {
+            delegate.characters(ch, start, length);
+        }
 
-        if (objs.length == 0) {
-            return null;
-        } else {
-            return objs[objs.length - 1];
+        @Override
+        public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+            delegate.ignorableWhitespace(ch, start, length);
         }
-    }
 
-    private int getHtmlColor(String color) {
-        // 16进制颜色值
-        try {
-            Matcher hexMatcher = getHexColorPattern().matcher(color);
-            if (hexMatcher.find()) {
-                String hexColor = hexMatcher.group(1);
-                return Color.parseColor(hexColor);
-            }
-        } catch (Exception ignore) {
+        @Override
+        public void setDocumentLocator(Locator locator) {
+            delegate.setDocumentLocator(locator);
         }
-        // rgb进制颜色值
-        try {
-            Matcher rgbMatcher = getRgbColorPattern().matcher(color);
-            if (rgbMatcher.find()) {
-                int r = Integer.valueOf(rgbMatcher.group(1));
-                int g = Integer.valueOf(rgbMatcher.group(2));
-                int b = Integer.valueOf(rgbMatcher.group(3));
-                return Color.rgb(r, g, b);
-            }
-        } catch (Exception ignore) {
+
+        @Override
+        public void startDocument() throws SAXException {
+            delegate.startDocument();
         }
-        // argb颜色值
-        try {
-            Matcher argbMatcher = getArgbColorPattern().matcher(color);
-            if (argbMatcher.find()) {
-                int r = Integer.valueOf(argbMatcher.group(1));
-                int g = Integer.valueOf(argbMatcher.group(2));
-                int b = Integer.valueOf(argbMatcher.group(3));
-                float a = Float.valueOf(argbMatcher.group(4));
-                return Color.argb((int) (a * 255), r, g, b);
-            }
-        } catch (Exception ignore) {
+
+        @Override
+        public void endDocument() throws SAXException {
+            delegate.endDocument();
         }
 
-        if ((0x00000000 & Html.FROM_HTML_OPTION_USE_CSS_COLORS)
-                == Html.FROM_HTML_OPTION_USE_CSS_COLORS) {
-            Integer i = sColorMap.get(color.toLowerCase(Locale.US));
-            if (i != null) {
-                return i;
-            }
+        @Override
+        public void startPrefixMapping(String prefix, String uri) throws SAXException {
+            delegate.startPrefixMapping(prefix, uri);
         }
-        return Color.BLACK;
-    }
 
-    private static Pattern getArgbColorPattern() {
-        if (sArgbColorPattern == null) {
-            sArgbColorPattern = Pattern.compile("^\\s*rgba\\(\\s*(\\d{1,3})\\s*,\\s*(\\d{1,3})\\s*,\\s*(\\d{1,3})\\s*,\\s*([\\d.]+)\\b");
+        @Override
+        public void endPrefixMapping(String prefix) throws SAXException {
+            delegate.endPrefixMapping(prefix);
         }
-        return sArgbColorPattern;
-    }
 
-    private static Pattern getHexColorPattern() {
-        if (sHexColorPattern == null) {
-            sHexColorPattern = Pattern.compile("^\\s*(#[A-Za-z0-9]{6,8})");
+        @Override
+        public void processingInstruction(String target, String data) throws SAXException {
+            delegate.processingInstruction(target, data);
         }
-        return sHexColorPattern;
-    }
 
-    private static Pattern getRgbColorPattern() {
-        if (sRgbColorPattern == null) {
-            sRgbColorPattern = Pattern.compile("^\\s*rgb\\(\\s*(\\d{1,3})\\s*,\\s*(\\d{1,3})\\s*,\\s*(\\d{1,3})\\b");
+        @Override
+        public void skippedEntity(String name) throws SAXException {
+            delegate.skippedEntity(name);
         }
-        return sRgbColorPattern;
     }
 
-    private static Pattern getForegroundColorPattern() {
-        if (sForegroundColorPattern == null) {
-            sForegroundColorPattern = Pattern.compile(
-                    "(?:\\s+|\\A|;\\s*)color\\s*:\\s*(.*)\\b");
+    /**
+     * font 标签的 size 转成 dp，相对 textView 的字体大小计算
+     * @return 大小（dp），没有 size 或者无法解析时返回 0
+     */
+    private int parseSize(String size) {
+        int step = HtmlParser.parseFontStep(size);
+        if (step == HtmlParser.NO_FONT_STEP) {
+            return 0;
         }
-        return sForegroundColorPattern;
+        int baseSize = px2dp(mTextPaint.getTextSize(), mContext.getResources().getDisplayMetrics().density);
+        return step + baseSize;
     }
 
-    private static Pattern getsForegroundFontSizePattern() {
-        if (sForegroundFontSizePattern == null) {
-            sForegroundFontSizePattern = Pattern.compile("font-size: (\\d+)px");
-        }
-        return sForegroundFontSizePattern;
+    private static int px2dp(float pxValue, float density) {
+        return (int) (pxValue / density + 0.5f);
     }
 
     private int getMarginParagraph() {
@@ -1,5 +1,10 @@
 package com.zhanyage.htmlparselib;
 
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.text.Editable;
 import android.text.Html;
 import android.text.Spannable;
 import android.text.SpannableStringBuilder;
@@ -8,9 +13,15 @@ import android.text.TextUtils;
 import android.text.style.ClickableSpan;
 import android.text.style.ImageSpan;
 import android.text.style.URLSpan;
+import android.util.Log;
 import android.widget.TextView;
 
 
+import com.zhanyage.htmlparsecore.CompiledDocument;
+import com.zhanyage.htmlparsecore.HtmlDocument;
+import com.zhanyage.htmlparsecore.HtmlParser;
+import com.zhanyage.htmlparselib.api.CustomTagHandler;
+import com.zhanyage.htmlparselib.api.HtmlMetricsListener;
 import com.zhanyage.htmlparselib.api.HtmlImageLoader;
 import com.zhanyage.htmlparselib.api.OnTagClickListener;
 import com.zhanyage.htmlparselib.span.ImageClickSpan;
@@ -18,17 +29,40 @@ import com.zhanyage.htmlparselib.span.LinkClickSpan;
 import com.zhanyage.htmlparselib.span.VideoClickSpan;
 import com.zhanyage.htmlparselib.span.VideoSpan;
 
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
 
 /**
  * Html config builder
  */
 public class HtmlText {
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+    /**
+     * 渐进渲染时第一段和之后每一段 html 的最小长度
+     */
+    private static final int FIRST_CHUNK_LENGTH = 8 * 1024;
+    private static final int CHUNK_LENGTH = 32 * 1024;
+
     private HtmlImageLoader imageLoader;
     private OnTagClickListener onTagClickListener;
     private After after;
+    private HtmlCache cache;
+    private boolean shareImageRequests;
+    private boolean precomputeText;
+    private int lazyImageDistance = -1;
+    private HtmlBitmapCache bitmapCache;
+    private Map<String, CustomTagHandler> customTagHandlers;
+    private HtmlMetricsListener metricsListener;
     private String source;
+    // fromCompiled 传入的预解析文档，解析时才解码
+    private ByteBuffer compiled;
 
     /**
      * TagHandler 解析完成后对 html 的处理 After
@@ -37,6 +71,28 @@ public class HtmlText {
         CharSequence after(SpannableStringBuilder ssb);
     }
 
+    /**
+     * 异步解析完成的回调，在主线程执行，每次解析只会回调其中一个方法，取消后都不会回调
+     */
+    public interface OnParsedListener {
+        void onParsed(ParsedHtml parsed);
+
+        /**
+         * 解析过程中抛出了异常，例如预解析的文档数据损坏
+         */
+        void onError(RuntimeException e);
+    }
+
+    /**
+     * 渐进渲染的第一段内容展示出来的回调，在主线程执行
+     */
+    public interface OnFirstContentListener {
+        /**
+         * @param elapsedMillis 从调用 intoProgressive 到第一段内容设置到 textView 上的耗时
+         */
+        void onFirstContent(long elapsedMillis);
+    }
+
     private HtmlText(String source) {
         this.source = source;
     }
@@ -45,6 +101,25 @@ public class HtmlText {
         return new HtmlText(source);
     }
 
+    /**
+     * 使用服务端预先解析好的文档，格式见 {@link CompiledDocument}。
+     * 绑定时直接解码成 span，不再解析 html，自定义标签处理器和解析缓存对它不生效
+     * @param data {@link CompiledDocument#encode} 的结果，之后不能再修改
+     */
+    public static HtmlText fromCompiled(byte[] data) {
+        return fromCompiled(ByteBuffer.wrap(data));
+    }
+
+    /**
+     * @param data 从当前 position 开始的预解析文档，之后不能再修改其中的内容
+     * @see #fromCompiled(byte[])
+     */
+    public static HtmlText fromCompiled(ByteBuffer data) {
+        HtmlText text = new HtmlText(null);
+        text.compiled = data.duplicate();
+        return text;
+    }
+
     public HtmlText setImageLoader(HtmlImageLoader imageLoader) {
         this.imageLoader = imageLoader;
         return this;
@@ -60,94 +135,636 @@ public class HtmlText {
         return this;
     }
 
+    /**
+     * 注册自定义标签的处理器，内置支持的标签不能被覆盖
+     * @param tag 标签名，不区分大小写
+     * @param handler 标签的处理器
+     */
+    public HtmlText registerTagHandler(String tag, CustomTagHandler handler) {
+        if (customTagHandlers == null) {
+            customTagHandlers = new HashMap<>();
+        }
+        customTagHandlers.put(tag.toLowerCase(Locale.US), handler);
+        return this;
+    }
+
+    /**
+     * 设置解析结果的缓存，相同的 html 和配置再次绑定时不再重新解析
+     * @param cache 可以在多个 HtmlText 之间共享的缓存，为 null 时不使用缓存
+     */
+    public HtmlText setCache(HtmlCache cache) {
+        this.cache = cache;
+        return this;
+    }
+
+    /**
+     * 设置解码后图片的缓存，解析时命中缓存的图片会直接展示，不再请求 imageLoader
+     * @param bitmapCache 可以在多个 HtmlText 之间共享的缓存，为 null 时不使用缓存
+     */
+    public HtmlText setBitmapCache(HtmlBitmapCache bitmapCache) {
+        this.bitmapCache = bitmapCache;
+        return this;
+    }
+
+    /**
+     * 开启图片懒加载，图片所在的行滚动到可见区域附近时才开始加载，支持 ScrollView、NestedScrollView、
+     * RecyclerView 等外部容器的滚动以及 TextView 自身的滚动。占位图会按照 img 标签的宽高展示。
+     * imageLoader 实现了 {@link com.zhanyage.htmlparselib.api.CancelableImageLoader} 时，
+     * 离开可见区域超过一屏的图片会被取消加载
+     * @param preloadDistance 提前加载的距离 px，小于 0 时关闭懒加载，立即加载所有图片
+     */
+    public HtmlText setLazyImageLoading(int preloadDistance) {
+        this.lazyImageDistance = preloadDistance;
+        return this;
+    }
+
+    /**
+     * 设置是否与其他同时渲染的文档共享图片请求，开启后使用同一个 imageLoader 实例的文档中相同的 url
+     * 只会请求一次。同一个文档内的相同 url 总是只请求一次。
+     * <p>
+     * 开启时 imageLoader 必须保证每个请求都会回调 onLoadComplete 或 onLoadFailed
+     */
+    public HtmlText setShareImageRequests(boolean shareImageRequests) {
+        this.shareImageRequests = shareImageRequests;
+        return this;
+    }
+
+    /**
+     * 设置异步解析时是否在后台线程提前测量文本，主线程 setText 时直接使用测量结果。
+     * API 28 及以上使用 PrecomputedText，低版本在后台构建一次 StaticLayout 预热文字排版的缓存。
+     * 只对 {@link #intoAsync(TextView, Executor)} 和 {@link #parse(TextView, Executor, OnParsedListener)} 生效
+     */
+    public HtmlText setPrecomputeText(boolean precomputeText) {
+        this.precomputeText = precomputeText;
+        return this;
+    }
+
+    /**
+     * 设置渲染耗时的统计回调，可以用来按文档大小统计各阶段的耗时分布
+     * @param metricsListener 为 null 时不统计，不会产生任何额外的开销
+     */
+    public HtmlText setMetricsListener(HtmlMetricsListener metricsListener) {
+        this.metricsListener = metricsListener;
+        return this;
+    }
+
+    /**
+     * 在当前线程解析 html 并设置到 textView 上，必须在主线程调用
+     * @param textView 想要展示信息的 textView
+     */
     public void into(TextView textView) {
-        if (TextUtils.isEmpty(source)) {
-            textView.setText("");
-            return;
+        boolean traced = HtmlTrace.begin("HtmlText.into");
+        try {
+            cancelPendingTask(textView);
+            parse(textView).into(textView);
+        } finally {
+            HtmlTrace.end(traced);
+        }
+    }
+
+    /**
+     * 在 executor 中解析 html，解析完成后在主线程设置到 textView 上。
+     * 同一个 textView 再次绑定时，之前还没有完成的解析会被取消
+     * @param textView 想要展示信息的 textView
+     * @param executor 执行解析的线程池
+     * @return 解析任务的取消令牌
+     */
+    public HtmlParseTask intoAsync(final TextView textView, Executor executor) {
+        unbind(textView);
+        final HtmlParseTask task = parse(textView, executor, new OnParsedListener() {
+            @Override
+            public void onParsed(ParsedHtml parsed) {
+                textView.setTag(R.id.htmlparse_parse_task, null);
+                parsed.into(textView);
+            }
+
+            @Override
+            public void onError(RuntimeException e) {
+                // 保留 textView 原来的内容
+                textView.setTag(R.id.htmlparse_parse_task, null);
+            }
+        });
+        textView.setTag(R.id.htmlparse_parse_task, task);
+        return task;
+    }
+
+    /**
+     * 渐进渲染很长的 html：按块级元素的边界把 html 切成多段，第一段在当前线程解析并立即展示，
+     * 之后的每一段解析完成后追加到 textView 的末尾，跨段的列表序号和样式保持不变。
+     * <p>
+     * 渐进渲染不使用解析缓存和提前测量，after 会对每一段分别调用。必须在主线程调用，
+     * 同一个 textView 再次绑定时，还没有追加的内容会被取消。
+     * 预解析的文档解码很快，不分段，在当前线程整篇展示
+     * @param textView 想要展示信息的 textView
+     * @param executor 解析剩余内容的线程池，为 null 时在主线程中依次解析，每次只解析一段
+     * @param listener 第一段内容展示后的回调，可以为 null
+     * @return 渲染任务的取消令牌
+     */
+    public HtmlParseTask intoProgressive(TextView textView, Executor executor, OnFirstContentListener listener) {
+        long startTime = SystemClock.uptimeMillis();
+        unbind(textView);
+        HtmlParseTask task = new HtmlParseTask();
+        if (compiled != null) {
+            parse(textView).into(textView);
+            if (listener != null) {
+                listener.onFirstContent(SystemClock.uptimeMillis() - startTime);
+            }
+            return task;
+        }
+        List<String> chunks = TextUtils.isEmpty(source)
+                ? Collections.singletonList("") : HtmlChunker.split(source, FIRST_CHUNK_LENGTH, CHUNK_LENGTH);
+        ProgressiveBinding binding = new ProgressiveBinding(textView, executor, task, chunks);
+        textView.setTag(R.id.htmlparse_parse_task, task);
+        binding.bindFirst();
+        if (listener != null) {
+            listener.onFirstContent(SystemClock.uptimeMillis() - startTime);
         }
+        binding.scheduleNext();
+        return task;
+    }
 
+    /**
+     * 在 executor 中解析 html，解析完成后在主线程回调 listener，after 也会在 executor 中执行。
+     * 需要在主线程调用
+     * @param textView 解析时用来获取字体大小、屏幕密度等信息的 textView
+     * @param executor 执行解析的线程池
+     * @param listener 解析完成或者失败的回调
+     * @return 解析任务的取消令牌
+     */
+    public HtmlParseTask parse(final TextView textView, Executor executor, final OnParsedListener listener) {
+        final HtmlParseTask task = new HtmlParseTask();
+        final HtmlImageGetter imageGetter = new HtmlImageGetter();
+        final HtmlTagHandler tagHandler = new HtmlTagHandler();
+        imageGetter.setTextView(textView);
+        tagHandler.setTextView(textView);
+        // textView 的宽度、字体参数只能在主线程获取
+        final TextPrecomputer precomputer = precomputeText ? new TextPrecomputer(textView) : null;
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (task.isCancelled()) {
+                    return;
+                }
+                ParsedHtml parsed = null;
+                RuntimeException error = null;
+                try {
+                    parsed = parse(textView, imageGetter, tagHandler);
+                    if (precomputer != null && !task.isCancelled()) {
+                        parsed = parsed.precompute(precomputer);
+                    }
+                } catch (RuntimeException e) {
+                    Log.e("HtmlText", "parse html is error", e);
+                    error = e;
+                }
+                final ParsedHtml result = parsed;
+                final RuntimeException failure = error;
+                MAIN_HANDLER.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (task.isCancelled()) {
+                            return;
+                        }
+                        if (failure != null) {
+                            listener.onError(failure);
+                        } else {
+                            listener.onParsed(result);
+                        }
+                    }
+                });
+            }
+        });
+        return task;
+    }
+
+    /**
+     * 在当前线程解析 html，可以在任意线程调用，绑定需要在主线程调用 {@link ParsedHtml#into(TextView)}
+     * @param textView 解析时用来获取字体大小、屏幕密度等信息的 textView
+     * @return 解析结果
+     */
+    public ParsedHtml parse(TextView textView) {
         HtmlImageGetter imageGetter = new HtmlImageGetter();
         HtmlTagHandler tagHandler = new HtmlTagHandler();
+        imageGetter.setTextView(textView);
+        tagHandler.setTextView(textView);
+        return parse(textView, imageGetter, tagHandler);
+    }
+
+    private ParsedHtml parse(TextView textView, HtmlImageGetter imageGetter, HtmlTagHandler tagHandler) {
+        boolean traced = HtmlTrace.begin("HtmlText.parse",
+                compiled != null ? compiled.remaining() : source == null ? 0 : source.length());
+        try {
+            return doParse(textView, imageGetter, tagHandler);
+        } finally {
+            HtmlTrace.end(traced);
+        }
+    }
+
+    private ParsedHtml doParse(TextView textView, HtmlImageGetter imageGetter, HtmlTagHandler tagHandler) {
+        if (compiled == null && TextUtils.isEmpty(source)) {
+            return new ParsedHtml("", null);
+        }
+
         List<String> imageUrls = new ArrayList<>();
 
-        imageGetter.setTextView(textView);
-        imageGetter.setImageLoader(imageLoader);
+        setUp(imageGetter, tagHandler);
+
+        SpannableStringBuilder ssb;
+        HtmlRenderMetrics metrics;
+        if (compiled != null) {
+            metrics = newMetrics(compiled.remaining());
+            long startTime = metrics != null ? System.nanoTime() : 0;
+            boolean traced = HtmlTrace.begin("HtmlText.fromCompiled");
+            try {
+                HtmlDocument document = CompiledDocument.decode(compiled);
+                imageGetter.getImageSize(document);
+                ssb = tagHandler.toSpanned(document);
+            } finally {
+                HtmlTrace.end(traced);
+            }
+            if (metrics != null) {
+                metrics.fromHtmlNanos = System.nanoTime() - startTime;
+            }
+        } else {
+            metrics = newMetrics(source.length());
+            ssb = fromSource(textView, imageGetter, tagHandler, metrics);
+        }
+
+        addClickSpans(ssb, textView.getContext(), imageUrls, metrics);
+
+        // Remove blank lines
+        removeTrailingNewlines(ssb);
+
+        //交给 after 处理
+        CharSequence charSequence = ssb;
+        if (after != null) {
+            charSequence = after.after(ssb);
+        }
+
+        return new ParsedHtml(charSequence, imageGetter, metrics, metricsListener);
+    }
+
+    private SpannableStringBuilder fromSource(TextView textView, HtmlImageGetter imageGetter,
+                                              HtmlTagHandler tagHandler, HtmlRenderMetrics metrics) {
         imageGetter.getImageSize(source);
 
-        tagHandler.setTextView(textView);
+        long startTime = metrics != null ? System.nanoTime() : 0;
+        SpannableStringBuilder ssb = null;
+        HtmlCache.Key cacheKey = null;
+        if (cache != null) {
+            cacheKey = HtmlCache.key(source, textView.getTextSize(),
+                    textView.getResources().getDisplayMetrics().density, imageLoader, customTagHandlers);
+            ssb = cache.get(cacheKey, imageGetter);
+        }
+
+        if (ssb == null) {
+            ssb = fromHtml(source, imageGetter, tagHandler, metrics);
+            if (cache != null) {
+                cache.put(cacheKey, ssb);
+            }
+        } else if (metrics != null) {
+            // 命中缓存时没有解析，tagCount 保持为 0
+            metrics.fromHtmlNanos = System.nanoTime() - startTime;
+        }
+        return ssb;
+    }
+
+    /**
+     * @return 没有设置 metricsListener 时返回 null，之后的各个阶段都不再计时
+     */
+    private HtmlRenderMetrics newMetrics(int sourceLength) {
+        return metricsListener != null ? new HtmlRenderMetrics(sourceLength) : null;
+    }
+
+    private void setUp(HtmlImageGetter imageGetter, HtmlTagHandler tagHandler) {
+        imageGetter.setImageLoader(imageLoader);
+        imageGetter.setMetricsListener(metricsListener);
+        imageGetter.setShareRequests(shareImageRequests);
+        imageGetter.setBitmapCache(bitmapCache);
+        imageGetter.setLazyDistance(lazyImageDistance);
+
         tagHandler.setImageGetter(imageGetter);
-        source = tagHandler.overrideTags(source);
+        tagHandler.setCustomTagHandlers(customTagHandlers);
+    }
 
-        Spanned spanned = Html.fromHtml(source, imageGetter, tagHandler);
-        SpannableStringBuilder ssb;
+    /**
+     * 解析 html。没有注册自定义标签时使用 htmlparse-core 的 {@link HtmlParser}，再转成 span，
+     * 不经过标签重写，解析和生成 span 的耗时都计入 fromHtmlNanos，overrideTagsNanos 为 0；
+     * 自定义标签需要直接修改 Editable，这时仍然交给 TagSoup 和 {@link HtmlTagHandler}
+     */
+    private static SpannableStringBuilder fromHtml(String source, HtmlImageGetter imageGetter,
+                                                   HtmlTagHandler tagHandler, HtmlRenderMetrics metrics) {
+        long startTime = metrics != null ? System.nanoTime() : 0;
+        if (!tagHandler.hasCustomTagHandlers()) {
+            boolean traced = HtmlTrace.begin("HtmlText.fromHtml");
+            HtmlDocument document;
+            SpannableStringBuilder ssb;
+            try {
+                document = HtmlParser.parse(source);
+                ssb = tagHandler.toSpanned(document);
+            } finally {
+                HtmlTrace.end(traced);
+            }
+            if (metrics != null) {
+                metrics.fromHtmlNanos = System.nanoTime() - startTime;
+                metrics.tagCount = document.getTagCount();
+            }
+            return ssb;
+        }
+        if (metrics != null) {
+            // TagSoup 不提供标签个数，单独扫描一次，相对 TagSoup 解析的耗时可以忽略
+            metrics.tagCount = HtmlParser.countTags(source);
+            startTime = System.nanoTime();
+        }
+        boolean traced = HtmlTrace.begin("HtmlText.overrideTags");
+        String html;
+        try {
+            html = tagHandler.overrideTags(source);
+        } finally {
+            HtmlTrace.end(traced);
+        }
+        long parseTime = metrics != null ? System.nanoTime() : 0;
+        traced = HtmlTrace.begin("HtmlText.fromHtml");
+        Spanned spanned;
+        try {
+            spanned = Html.fromHtml(html, imageGetter, tagHandler);
+        } finally {
+            HtmlTrace.end(traced);
+        }
+        if (metrics != null) {
+            metrics.overrideTagsNanos = parseTime - startTime;
+            metrics.fromHtmlNanos = System.nanoTime() - parseTime;
+        }
         if (spanned instanceof SpannableStringBuilder) {
-            ssb = (SpannableStringBuilder) spanned;
-        } else {
-            ssb = new SpannableStringBuilder(spanned);
+            return (SpannableStringBuilder) spanned;
         }
+        return new SpannableStringBuilder(spanned);
+    }
 
+    /**
+     * 把图片、视频、链接替换成可以点击的 span
+     * @param imageUrls 文档中所有图片的 url，新的图片会追加到后面，点击图片时会回调这个列表
+     * @param metrics 记录每一类 span 的耗时和个数，为 null 时不统计
+     */
+    private void addClickSpans(SpannableStringBuilder ssb, Context context, List<String> imageUrls,
+                               HtmlRenderMetrics metrics) {
+        long startTime = metrics != null ? System.nanoTime() : 0;
+        boolean traced = HtmlTrace.begin("HtmlText.imageSpans");
         //Hold image url link
-        imageUrls.clear();
         ImageSpan[] imageSpans = ssb.getSpans(0, ssb.length(), ImageSpan.class);
-        for (int i = 0; i < imageSpans.length; i++) {
-            ImageSpan imageSpan = imageSpans[i];
-            String imageUrl = imageSpan.getSource();
-            int start = ssb.getSpanStart(imageSpan);
-            int end = ssb.getSpanEnd(imageSpan);
-            imageUrls.add(imageUrl);
-
-            ImageClickSpan imageClickSpan = new ImageClickSpan(textView.getContext(), imageUrls, i);
-            imageClickSpan.setListener(onTagClickListener);
-            ClickableSpan[] clickableSpans = ssb.getSpans(start, end, ClickableSpan.class);
-            if (clickableSpans != null) {
-                for (ClickableSpan cs : clickableSpans) {
-                    ssb.removeSpan(cs);
+        try {
+            for (ImageSpan imageSpan : imageSpans) {
+                String imageUrl = imageSpan.getSource();
+                int start = ssb.getSpanStart(imageSpan);
+                int end = ssb.getSpanEnd(imageSpan);
+                int position = imageUrls.size();
+                imageUrls.add(imageUrl);
+
+                ImageClickSpan imageClickSpan = new ImageClickSpan(context, imageUrls, position);
+                imageClickSpan.setListener(onTagClickListener);
+                ClickableSpan[] clickableSpans = ssb.getSpans(start, end, ClickableSpan.class);
+                if (clickableSpans != null) {
+                    for (ClickableSpan cs : clickableSpans) {
+                        ssb.removeSpan(cs);
+                    }
                 }
+                ssb.setSpan(imageClickSpan, start, end, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
             }
-            ssb.setSpan(imageClickSpan, start, end, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        } finally {
+            HtmlTrace.end(traced);
         }
+        if (metrics != null) {
+            long now = System.nanoTime();
+            metrics.imageSpanNanos = now - startTime;
+            metrics.imageCount = imageSpans.length;
+            startTime = now;
+        }
+
+        traced = HtmlTrace.begin("HtmlText.videoSpans");
 
         //Hold video url link
         VideoSpan[] videoSpans = ssb.getSpans(0, ssb.length(), VideoSpan.class);
-        for (VideoSpan videoSpan : videoSpans) {
-            int start = ssb.getSpanStart(videoSpan);
-            int end = ssb.getSpanEnd(videoSpan);
-
-            VideoClickSpan videoClickSpan = new VideoClickSpan(textView.getContext(), videoSpan.getResourceUrl());
-            videoClickSpan.setListener(onTagClickListener);
-            ClickableSpan[] clickableSpans = ssb.getSpans(start, end, ClickableSpan.class);
-            if (clickableSpans != null) {
-                for (ClickableSpan cs : clickableSpans) {
-                    ssb.removeSpan(cs);
+        try {
+            for (VideoSpan videoSpan : videoSpans) {
+                int start = ssb.getSpanStart(videoSpan);
+                int end = ssb.getSpanEnd(videoSpan);
+
+                VideoClickSpan videoClickSpan = new VideoClickSpan(context, videoSpan.getResourceUrl());
+                videoClickSpan.setListener(onTagClickListener);
+                ClickableSpan[] clickableSpans = ssb.getSpans(start, end, ClickableSpan.class);
+                if (clickableSpans != null) {
+                    for (ClickableSpan cs : clickableSpans) {
+                        ssb.removeSpan(cs);
+                    }
                 }
+                ssb.setSpan(videoClickSpan, start, end, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
             }
-            ssb.setSpan(videoClickSpan, start, end, Spanned.SPAN_EXCLUSIVE_EXCLUSIVE);
+        } finally {
+            HtmlTrace.end(traced);
         }
+        if (metrics != null) {
+            long now = System.nanoTime();
+            metrics.videoSpanNanos = now - startTime;
+            metrics.videoCount = videoSpans.length;
+            startTime = now;
+        }
+
+        traced = HtmlTrace.begin("HtmlText.linkSpans");
 
         // Hold text url link
         URLSpan[] urlSpans = ssb.getSpans(0, ssb.length(), URLSpan.class);
-        if (urlSpans != null) {
+        try {
             for (URLSpan urlSpan : urlSpans) {
                 int start = ssb.getSpanStart(urlSpan);
                 int end = ssb.getSpanEnd(urlSpan);
                 ssb.removeSpan(urlSpan);
-                LinkClickSpan linkClickSpan = new LinkClickSpan(textView.getContext(), urlSpan.getURL());
+                LinkClickSpan linkClickSpan = new LinkClickSpan(context, urlSpan.getURL());
                 linkClickSpan.setListener(onTagClickListener);
                 ssb.setSpan(linkClickSpan, start, end, Spannable.SPAN_EXCLUSIVE_INCLUSIVE);
             }
+        } finally {
+            HtmlTrace.end(traced);
+        }
+        if (metrics != null) {
+            metrics.linkSpanNanos = System.nanoTime() - startTime;
+            metrics.linkCount = urlSpans.length;
+            metrics.spanCount = ssb.getSpans(0, ssb.length(), Object.class).length;
         }
+    }
 
-        // Remove blank lines
+    private static void removeTrailingNewlines(SpannableStringBuilder ssb) {
         while (ssb.length() > 0 && ssb.charAt(ssb.length() - 1) == '\n') {
             ssb.delete(ssb.length() - 1, ssb.length());
         }
+    }
 
-        //交给 after 处理
-        CharSequence charSequence = ssb;
-        if (after != null) {
-            charSequence = after.after(ssb);
+    /**
+     * 一次渐进渲染。所有的段按顺序解析，一段追加到 textView 上之后才开始解析下一段，
+     * 所以图片的序号、加载状态只会被一个线程访问
+     */
+    private class ProgressiveBinding {
+        private final TextView textView;
+        private final Executor executor;
+        private final HtmlParseTask task;
+        private final List<String> chunks;
+        private final HtmlImageGetter imageGetter = new HtmlImageGetter();
+        // 在解析线程追加，点击图片时在主线程读取
+        private final List<String> imageUrls = new CopyOnWriteArrayList<>();
+        private int next;
+
+        ProgressiveBinding(TextView textView, Executor executor, HtmlParseTask task, List<String> chunks) {
+            this.textView = textView;
+            this.executor = executor;
+            this.task = task;
+            this.chunks = chunks;
+            imageGetter.setTextView(textView);
+        }
+
+        void bindFirst() {
+            HtmlImageGetter.bind(textView, imageGetter);
+            HtmlRenderMetrics metrics = newMetrics(chunks.get(0).length());
+            CharSequence text = parseChunk(0, newTagHandler(), metrics);
+            long startTime = metrics != null ? System.nanoTime() : 0;
+            boolean traced = HtmlTrace.begin("HtmlText.setText");
+            try {
+                textView.setText(text, TextView.BufferType.EDITABLE);
+            } finally {
+                HtmlTrace.end(traced);
+            }
+            report(metrics, startTime);
+            imageGetter.startLoading();
+            next = 1;
+        }
+
+        void scheduleNext() {
+            if (task.isCancelled()) {
+                return;
+            }
+            if (next >= chunks.size()) {
+                finish();
+                return;
+            }
+
+            final int index = next++;
+            // 需要读取 textView 的 paint，只能在主线程创建
+            final HtmlTagHandler tagHandler = newTagHandler();
+            final HtmlRenderMetrics metrics = newMetrics(chunks.get(index).length());
+            Runnable parseTask = new Runnable() {
+                @Override
+                public void run() {
+                    if (task.isCancelled()) {
+                        return;
+                    }
+                    final CharSequence text;
+                    try {
+                        text = parseChunk(index, tagHandler, metrics);
+                    } catch (RuntimeException e) {
+                        Log.e("HtmlText", "parse html is error", e);
+                        MAIN_HANDLER.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                // 已经展示的内容保留，剩余的段不再解析
+                                finish();
+                            }
+                        });
+                        return;
+                    }
+                    MAIN_HANDLER.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            append(text, metrics);
+                        }
+                    });
+                }
+            };
+            if (executor != null) {
+                executor.execute(parseTask);
+            } else {
+                MAIN_HANDLER.post(parseTask);
+            }
+        }
+
+        private void finish() {
+            if (textView.getTag(R.id.htmlparse_parse_task) == task) {
+                textView.setTag(R.id.htmlparse_parse_task, null);
+            }
+        }
+
+        private void append(CharSequence text, HtmlRenderMetrics metrics) {
+            if (task.isCancelled()) {
+                return;
+            }
+            CharSequence current = textView.getText();
+            if (!(current instanceof Editable)) {
+                // textView 的内容已经被外部替换
+                task.cancel();
+                return;
+            }
+            long startTime = metrics != null ? System.nanoTime() : 0;
+            boolean traced = HtmlTrace.begin("HtmlText.append");
+            try {
+                ((Editable) current).append(text);
+            } finally {
+                HtmlTrace.end(traced);
+            }
+            report(metrics, startTime);
+            imageGetter.startLoading();
+            scheduleNext();
+        }
+
+        private void report(HtmlRenderMetrics metrics, long setTextStartTime) {
+            if (metrics != null) {
+                metrics.setTextNanos = System.nanoTime() - setTextStartTime;
+                metricsListener.onRendered(metrics);
+            }
+        }
+
+        private HtmlTagHandler newTagHandler() {
+            HtmlTagHandler tagHandler = new HtmlTagHandler();
+            tagHandler.setTextView(textView);
+            return tagHandler;
         }
 
-        textView.setText(charSequence);
+        private CharSequence parseChunk(int index, HtmlTagHandler tagHandler, HtmlRenderMetrics metrics) {
+            String chunk = chunks.get(index);
+            boolean traced = HtmlTrace.begin("HtmlText.parseChunk", chunk.length());
+            try {
+                return doParseChunk(index, chunk, tagHandler, metrics);
+            } finally {
+                HtmlTrace.end(traced);
+            }
+        }
+
+        private CharSequence doParseChunk(int index, String chunk, HtmlTagHandler tagHandler,
+                                          HtmlRenderMetrics metrics) {
+            setUp(imageGetter, tagHandler);
+            // 图片的宽高按照出现的顺序记录，按段依次追加
+            imageGetter.getImageSize(chunk);
+            SpannableStringBuilder ssb = fromHtml(chunk, imageGetter, tagHandler, metrics);
+            addClickSpans(ssb, textView.getContext(), imageUrls, metrics);
+            if (index == chunks.size() - 1) {
+                removeTrailingNewlines(ssb);
+            }
+            return after != null ? after.after(ssb) : ssb;
+        }
+    }
+
+    /**
+     * 解除 textView 与之前内容的绑定：取消还没有完成的解析，丢弃还没有完成的图片加载，
+     * imageLoader 实现了 {@link com.zhanyage.htmlparselib.api.CancelableImageLoader} 时会通知外部取消。
+     * 绑定新内容时会自动调用，也可以在 RecyclerView 的 onViewRecycled 中调用。必须在主线程调用
+     * @param textView 之前展示 html 的 textView
+     */
+    public static void unbind(TextView textView) {
+        cancelPendingTask(textView);
+        HtmlImageGetter.bind(textView, null);
+    }
+
+    private static void cancelPendingTask(TextView textView) {
+        Object task = textView.getTag(R.id.htmlparse_parse_task);
+        if (task instanceof HtmlParseTask) {
+            ((HtmlParseTask) task).cancel();
+        }
+        textView.setTag(R.id.htmlparse_parse_task, null);
     }
 }
@@ -0,0 +1,142 @@
+package com.zhanyage.htmlparselib;
+
+import android.os.Build;
+import android.os.Trace;
+
+import androidx.annotation.RequiresApi;
+
+/**
+ * 在 systrace / Perfetto 中输出解析和图片加载各阶段的区间，用来定位卡顿的帧是哪一段 html 的哪个阶段造成的。
+ * <p>
+ * 同步区间需要 API 18，图片加载的异步区间需要 API 29，低版本开启后不会输出。
+ * 开始时返回的令牌需要交给对应的结束方法，开关在区间中途切换时也不会出现不配对的区间
+ */
+public final class HtmlTrace {
+    private static volatile boolean sEnabled;
+    // 替换 android.os.Trace 的输出，只在测试中使用
+    private static volatile Tracer sTracer;
+    // 异步区间的 id，只在主线程访问
+    private static int sNextCookie;
+
+    private HtmlTrace() {
+    }
+
+    /**
+     * 开启或关闭区间的输出，默认关闭。关闭时只有一次 volatile 读取，不会创建任何对象
+     */
+    public static void setEnabled(boolean enabled) {
+        sEnabled = enabled && Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+    }
+
+    public static boolean isEnabled() {
+        return sEnabled;
+    }
+
+    /**
+     * @return 是否开始了区间，需要交给 {@link #end(boolean)}
+     */
+    static boolean begin(String name) {
+        if (!sEnabled) {
+            return false;
+        }
+        beginSection(name);
+        return true;
+    }
+
+    /**
+     * 区间名称后面带上 html 的长度，方便区分是哪一段 html
+     */
+    static boolean begin(String name, int length) {
+        if (!sEnabled) {
+            return false;
+        }
+        beginSection(name + " [" + length + "]");
+        return true;
+    }
+
+    static void end(boolean began) {
+        if (began) {
+            Tracer tracer = sTracer;
+            if (tracer != null) {
+                tracer.endSection();
+            } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+                PlatformTrace.endSection();
+            }
+        }
+    }
+
+    private static void beginSection(String name) {
+        Tracer tracer = sTracer;
+        if (tracer != null) {
+            tracer.beginSection(name);
+        } else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            PlatformTrace.beginSection(name);
+        }
+    }
+
+    /**
+     * 开始一个可以跨线程、跨帧的异步区间，只能在主线程调用
+     * @return 区间的 id，没有开始时为 0，需要交给 {@link #endAsync(String, int)}
+     */
+    static int beginAsync(String name) {
+        if (!sEnabled || Build.VERSION.SDK_INT < Build.VERSION_CODES.Q) {
+            return 0;
+        }
+        if (++sNextCookie == 0) {
+            sNextCookie = 1;
+        }
+        AsyncTrace.beginSection(name, sNextCookie);
+        return sNextCookie;
+    }
+
+    static void endAsync(String name, int cookie) {
+        if (cookie != 0 && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            AsyncTrace.endSection(name, cookie);
+        }
+    }
+
+    /**
+     * 把同步区间输出到 tracer 而不是 android.os.Trace，不受系统版本限制，传 null 时恢复并关闭输出。只在测试中使用
+     */
+    static void setTracer(Tracer tracer) {
+        sTracer = tracer;
+        sEnabled = tracer != null;
+    }
+
+    /**
+     * android.os.Trace 的同步区间在 API 18 才有，单独放在一个类中，低版本不会加载
+     */
+    @RequiresApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    private static class PlatformTrace {
+        static void beginSection(String name) {
+            Trace.beginSection(name);
+        }
+
+        static void endSection() {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * 异步区间在 API 29 才有
+     */
+    @RequiresApi(Build.VERSION_CODES.Q)
+    private static class AsyncTrace {
+        static void beginSection(String name, int cookie) {
+            Trace.beginAsyncSection(name, cookie);
+        }
+
+        static void endSection(String name, int cookie) {
+            Trace.endAsyncSection(name, cookie);
+        }
+    }
+
+    /**
+     * 同步区间的输出
+     */
+    interface Tracer {
+        void beginSection(String name);
+
+        void endSection();
+    }
+}
@@ -0,0 +1,68 @@
+package com.zhanyage.htmlparselib;
+
+import android.widget.TextView;
+
+import com.zhanyage.htmlparselib.api.HtmlMetricsListener;
+
+/**
+ * 解析完成的 html，解析可以在任意线程进行，绑定到 TextView 必须在主线程
+ */
+public final class ParsedHtml {
+    private final CharSequence text;
+    private final HtmlImageGetter imageGetter;
+    // 没有设置 metricsListener 时为 null
+    private final HtmlRenderMetrics metrics;
+    private final HtmlMetricsListener metricsListener;
+
+    ParsedHtml(CharSequence text, HtmlImageGetter imageGetter) {
+        this(text, imageGetter, null, null);
+    }
+
+    ParsedHtml(CharSequence text, HtmlImageGetter imageGetter, HtmlRenderMetrics metrics,
+               HtmlMetricsListener metricsListener) {
+        this.text = text;
+        this.imageGetter = imageGetter;
+        this.metrics = metrics;
+        this.metricsListener = metricsListener;
+    }
+
+    /**
+     * 获取解析后的文本
+     * @return 带 span 的文本
+     */
+    public CharSequence getText() {
+        return text;
+    }
+
+    /**
+     * 在当前线程提前测量文本
+     * @return 文本替换成测量结果的 ParsedHtml
+     */
+    ParsedHtml precompute(TextPrecomputer precomputer) {
+        return new ParsedHtml(precomputer.precompute(text), imageGetter, metrics, metricsListener);
+    }
+
+    /**
+     * 把解析结果设置到 textView 上，并开始加载其中的图片，必须在主线程调用
+     * @param textView 想要展示信息的 textView
+     */
+    public void into(TextView textView) {
+        // 之前绑定的内容还在加载的图片不再刷新这个 textView
+        HtmlImageGetter.bind(textView, imageGetter);
+        long startTime = metrics != null ? System.nanoTime() : 0;
+        boolean traced = HtmlTrace.begin("HtmlText.setText");
+        try {
+            textView.setText(TextPrecomputer.forTextView(textView, text, false));
+        } finally {
+            HtmlTrace.end(traced);
+        }
+        if (metrics != null) {
+            metrics.setTextNanos = System.nanoTime() - startTime;
+            metricsListener.onRendered(metrics);
+        }
+        if (imageGetter != null) {
+            imageGetter.setTextView(textView);
+            imageGetter.startLoading();
+        }
+    }
+}
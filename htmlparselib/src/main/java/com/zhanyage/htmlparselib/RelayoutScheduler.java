@@ -0,0 +1,115 @@
+package com.zhanyage.htmlparselib;
+
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+import android.widget.TextView;
+
+import androidx.annotation.RequiresApi;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 图片加载完成后 TextView 重新布局的调度器。同一帧内的多次请求会合并，
+ * 每个 TextView 每帧最多只执行一次 setText，只能在主线程使用
+ */
+public final class RelayoutScheduler {
+    private static final List<TextView> sPendingViews = new ArrayList<>();
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+    private static final Runnable sFlushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+    private static FrameScheduler sFrameScheduler;
+    private static boolean sScheduled;
+
+    private static volatile long sRequestCount;
+    private static volatile long sRelayoutCount;
+
+    private RelayoutScheduler() {
+    }
+
+    /**
+     * @return 图片加载完成后请求重新布局的次数
+     */
+    public static long getRequestCount() {
+        return sRequestCount;
+    }
+
+    /**
+     * @return 实际执行重新布局的次数
+     */
+    public static long getRelayoutCount() {
+        return sRelayoutCount;
+    }
+
+    /**
+     * @return 被合并掉的重新布局次数
+     */
+    public static long getCoalescedCount() {
+        return sRequestCount - sRelayoutCount;
+    }
+
+    /**
+     * 请求在下一帧重新布局 textView
+     */
+    static void requestRelayout(TextView textView) {
+        sRequestCount++;
+        if (!sPendingViews.contains(textView)) {
+            sPendingViews.add(textView);
+        }
+        if (!sScheduled) {
+            sScheduled = true;
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+                if (sFrameScheduler == null) {
+                    sFrameScheduler = new FrameScheduler();
+                }
+                sFrameScheduler.schedule();
+            } else {
+                sMainHandler.post(sFlushRunnable);
+            }
+        }
+    }
+
+    /**
+     * 取消 textView 还没有执行的重新布局
+     */
+    static void cancel(TextView textView) {
+        sPendingViews.remove(textView);
+    }
+
+    private static void flush() {
+        sScheduled = false;
+        for (int i = 0; i < sPendingViews.size(); i++) {
+            TextView textView = sPendingViews.get(i);
+            // 图片尺寸变化后，提前测量的结果已经过期
+            boolean traced = HtmlTrace.begin("RelayoutScheduler.relayout");
+            try {
+                textView.setText(TextPrecomputer.forTextView(textView, textView.getText(), true));
+            } finally {
+                HtmlTrace.end(traced);
+            }
+            sRelayoutCount++;
+        }
+        sPendingViews.clear();
+    }
+
+    /**
+     * Choreographer 在 API 16 才有，单独放在一个类中，低版本不会加载
+     */
+    @RequiresApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static class FrameScheduler implements Choreographer.FrameCallback {
+        void schedule() {
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.zhanyage.htmlparselib;
+
+import android.graphics.Typeface;
+import android.graphics.drawable.Drawable;
+import android.text.Html;
+import android.text.Layout;
+import android.text.SpannableStringBuilder;
+import android.text.Spanned;
+import android.text.TextPaint;
+import android.text.style.AbsoluteSizeSpan;
+import android.text.style.AlignmentSpan;
+import android.text.style.BackgroundColorSpan;
+import android.text.style.ForegroundColorSpan;
+import android.text.style.ImageSpan;
+import android.text.style.QuoteSpan;
+import android.text.style.RelativeSizeSpan;
+import android.text.style.StrikethroughSpan;
+import android.text.style.StyleSpan;
+import android.text.style.SubscriptSpan;
+import android.text.style.SuperscriptSpan;
+import android.text.style.TypefaceSpan;
+import android.text.style.URLSpan;
+import android.text.style.UnderlineSpan;
+
+import com.zhanyage.htmlparsecore.HtmlDocument;
+import com.zhanyage.htmlparsecore.StyleRun;
+
+/**
+ * 把 htmlparse-core 解析出的 {@link HtmlDocument} 转成 Android 的 span。
+ * <p>
+ * 生成的 span 和 {@link HtmlTagHandler} 配合 Html.fromHtml 的结果一致：样式区间按文档中的顺序设置，
+ * 图片按出现的顺序通过 imageGetter 获取 drawable，段落样式落在段落边界上时使用 SPAN_PARAGRAPH
+ */
+final class SpanAdapter {
+
+    private SpanAdapter() {
+    }
+
+    /**
+     * @param imageGetter  获取图片、视频首帧的 drawable
+     * @param textPaint    计算有序列表序号宽度的 paint
+     * @param baseSizeDp   默认字体大小（dp），font 标签的 size 相对它计算
+     * @return 可以继续修改的解析结果
+     */
+    static SpannableStringBuilder toSpanned(HtmlDocument document, Html.ImageGetter imageGetter,
+                                            TextPaint textPaint, int baseSizeDp) {
+        SpannableStringBuilder ssb = new SpannableStringBuilder(document.getText());
+        final int runCount = document.getRunCount();
+        for (int i = 0; i < runCount; i++) {
+            int type = document.getRunType(i);
+            int start = document.getRunStart(i);
+            int end = document.getRunEnd(i);
+            int value = document.getRunValue(i);
+            int flags = StyleRun.isParagraph(type) ? paragraphFlags(ssb, start, end)
+                    : Spanned.SPAN_EXCLUSIVE_EXCLUSIVE;
+
+            switch (type) {
+                case StyleRun.BOLD:
+                    ssb.setSpan(new StyleSpan(Typeface.BOLD), start, end, flags);
+                    break;
+                case StyleRun.ITALIC:
+                    ssb.setSpan(new StyleSpan(Typeface.ITALIC), start, end, flags);
+                    break;
+                case StyleRun.UNDERLINE:
+                    ssb.setSpan(new UnderlineSpan(), start, end, flags);
+                    break;
+                case StyleRun.STRIKETHROUGH:
+                    ssb.setSpan(new StrikethroughSpan(), start, end, flags);
+                    break;
+                case StyleRun.MONOSPACE:
+                    ssb.setSpan(new TypefaceSpan("monospace"), start, end, flags);
+                    break;
+                case StyleRun.FOREGROUND_COLOR:
+                    ssb.setSpan(new ForegroundColorSpan(value | 0xFF000000), start, end, flags);
+                    break;
+                case StyleRun.BACKGROUND_COLOR:
+                    ssb.setSpan(new BackgroundColorSpan(value), start, end, flags);
+                    break;
+                case StyleRun.TEXT_SIZE:
+                    int size = document.getRunExtra(i) == StyleRun.UNIT_FONT_STEP ? value + baseSizeDp : value;
+                    if (size > 0) {
+                        ssb.setSpan(new AbsoluteSizeSpan(size, true), start, end, flags);
+                    }
+                    break;
+                case StyleRun.RELATIVE_SIZE:
+                    ssb.setSpan(new RelativeSizeSpan(Float.intBitsToFloat(value)), start, end, flags);
+                    break;
+                case StyleRun.SUPERSCRIPT:
+                    ssb.setSpan(new SuperscriptSpan(), start, end, flags);
+                    break;
+                case StyleRun.SUBSCRIPT:
+                    ssb.setSpan(new SubscriptSpan(), start, end, flags);
+                    break;
+                case StyleRun.LINK:
+                    ssb.setSpan(new URLSpan(document.getRunString(i)), start, end, flags);
+                    break;
+                case StyleRun.IMAGE:
+                    String source = document.getRunString(i);
+                    Drawable d = imageGetter == null ? null : imageGetter.getDrawable(source);
+                    if (d != null) {
+                        ssb.setSpan(new ImageSpan(d, source), start, end, flags);
+                    }
+                    break;
+                case StyleRun.VIDEO:
+                    ssb.setSpan(HtmlTagHandler.newVideoSpan(imageGetter, document.getRunString(i),
+                            document.getRunSecondString(i)), start, end, flags);
+                    break;
+                case StyleRun.BULLET:
+                    setSpans(ssb, HtmlTagHandler.newBulletSpans(value), start, end, flags);
+                    break;
+                case StyleRun.NUMBER:
+                    setSpans(ssb, HtmlTagHandler.newNumberSpans(textPaint, value, document.getRunExtra(i)),
+                            start, end, flags);
+                    break;
+                case StyleRun.ALIGNMENT:
+                    ssb.setSpan(new AlignmentSpan.Standard(toAlignment(value)), start, end, flags);
+                    break;
+                case StyleRun.QUOTE:
+                    ssb.setSpan(new QuoteSpan(), start, end, flags);
+                    break;
+                default:
+                    break;
+            }
+        }
+        return ssb;
+    }
+
+    private static void setSpans(SpannableStringBuilder ssb, Object[] spans, int start, int end, int flags) {
+        for (Object span : spans) {
+            ssb.setSpan(span, start, end, flags);
+        }
+    }
+
+    /**
+     * 和 Html.fromHtml 一致，段落样式使用 SPAN_PARAGRAPH；
+     * 区间不在段落边界上时 SpannableStringBuilder 会抛出异常，这时退回 SPAN_EXCLUSIVE_EXCLUSIVE
+     */
+    private static int paragraphFlags(CharSequence text, int start, int end) {
+        int length = text.length();
+        boolean startsParagraph = start == 0 || start == length || text.charAt(start - 1) == '\n';
+        boolean endsParagraph = end == 0 || end == length || text.charAt(end - 1) == '\n';
+        return startsParagraph && endsParagraph ? Spanned.SPAN_PARAGRAPH : Spanned.SPAN_EXCLUSIVE_EXCLUSIVE;
+    }
+
+    static Layout.Alignment toAlignment(int align) {
+        switch (align) {
+            case StyleRun.ALIGN_CENTER:
+                return Layout.Alignment.ALIGN_CENTER;
+            case StyleRun.ALIGN_OPPOSITE:
+                return Layout.Alignment.ALIGN_OPPOSITE;
+            default:
+                return Layout.Alignment.ALIGN_NORMAL;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.zhanyage.htmlparselib;
+
+import android.os.Build;
+import android.text.Layout;
+import android.text.PrecomputedText;
+import android.text.SpannableString;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.view.View;
+import android.view.ViewParent;
+import android.widget.TextView;
+
+import androidx.annotation.RequiresApi;
+
+/**
+ * 在后台线程提前完成文字的测量，主线程 setText 时只需要使用测量结果。
+ * <p>
+ * API 28 及以上生成 {@link PrecomputedText}；低版本在后台构建一次 StaticLayout，
+ * 系统会缓存文字排版（shaping）的结果，主线程布局时可以直接命中这些缓存。
+ * <p>
+ * 需要在主线程创建，{@link #precompute(CharSequence)} 可以在任意线程调用
+ */
+final class TextPrecomputer {
+    private final TextPaint paint;
+    private final int width;
+    private final Object params;
+
+    TextPrecomputer(TextView textView) {
+        paint = new TextPaint(textView.getPaint());
+        width = availableWidth(textView) - textView.getCompoundPaddingLeft() - textView.getCompoundPaddingRight();
+        params = Build.VERSION.SDK_INT >= Build.VERSION_CODES.P ? PrecomputedTextCompat.getParams(textView) : null;
+    }
+
+    /**
+     * 异步解析通常在 textView 测量之前开始，这时 textView 的宽度为 0，依次使用父 View 的宽度和屏幕宽度。
+     * 低版本预热的是按单词缓存的排版结果，和换行的位置无关，宽度不准确时仍然可以命中
+     */
+    private static int availableWidth(TextView textView) {
+        int width = textView.getWidth();
+        ViewParent parent = textView.getParent();
+        if (width <= 0 && parent instanceof View) {
+            View parentView = (View) parent;
+            width = parentView.getWidth() - parentView.getPaddingLeft() - parentView.getPaddingRight();
+        }
+        if (width <= 0) {
+            width = textView.getResources().getDisplayMetrics().widthPixels;
+        }
+        return width;
+    }
+
+    /**
+     * 测量文字
+     * @param text 解析后的文本
+     * @return API 28 及以上返回 PrecomputedText，否则返回原来的文本
+     */
+    @SuppressWarnings("deprecation")
+    CharSequence precompute(CharSequence text) {
+        if (params != null) {
+            return PrecomputedTextCompat.create(text, params);
+        }
+        if (width > 0) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                StaticLayoutCompat.build(text, paint, width);
+            } else {
+                // StaticLayout.Builder 在 API 23 才有
+                new StaticLayout(text, paint, width, Layout.Alignment.ALIGN_NORMAL, 1f, 0f, true);
+            }
+        }
+        return text;
+    }
+
+    /**
+     * textView 的字体等参数和测量时不一致，或者测量之后图片尺寸发生了变化时，测量结果不能再使用，
+     * 需要转成普通的文本交给 textView 重新测量
+     * @param textView 将要设置文本的 textView
+     * @param text 将要设置的文本
+     * @param forceRemeasure 是否一定要重新测量
+     * @return 可以直接设置到 textView 上的文本
+     */
+    static CharSequence forTextView(TextView textView, CharSequence text, boolean forceRemeasure) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.P && PrecomputedTextCompat.isPrecomputed(text)
+                && (forceRemeasure || !PrecomputedTextCompat.isUsable(textView, text))) {
+            return new SpannableString(text);
+        }
+        return text;
+    }
+
+    /**
+     * 和 StaticLayout 旧的构造方法参数一致：左对齐，行距倍数 1，额外行距 0，包含字体的上下留白
+     */
+    @RequiresApi(Build.VERSION_CODES.M)
+    private static class StaticLayoutCompat {
+        static void build(CharSequence text, TextPaint paint, int width) {
+            StaticLayout.Builder.obtain(text, 0, text.length(), paint, width)
+                    .setAlignment(Layout.Alignment.ALIGN_NORMAL)
+                    .setLineSpacing(0f, 1f)
+                    .setIncludePad(true)
+                    .build();
+        }
+    }
+
+    /**
+     * PrecomputedText 在 API 28 才有，单独放在一个类中，低版本不会加载
+     */
+    @RequiresApi(Build.VERSION_CODES.P)
+    private static class PrecomputedTextCompat {
+        static Object getParams(TextView textView) {
+            return textView.getTextMetricsParams();
+        }
+
+        static CharSequence create(CharSequence text, Object params) {
+            return PrecomputedText.create(text, (PrecomputedText.Params) params);
+        }
+
+        static boolean isPrecomputed(CharSequence text) {
+            return text instanceof PrecomputedText;
+        }
+
+        static boolean isUsable(TextView textView, CharSequence text) {
+            return ((PrecomputedText) text).getParams().equals(textView.getTextMetricsParams());
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.zhanyage.htmlparselib.api;
+
+/**
+ * 可以取消加载的 {@link HtmlImageLoader}。
+ * 图片离开可见区域很远、或者 TextView 已经绑定了新的内容时，htmlparse 会通过 {@link #cancel(Callback)}
+ * 通知外部停止还没有完成的网络请求和解码
+ */
+public interface CancelableImageLoader extends HtmlImageLoader {
+
+    /**
+     * 取消还没有完成的加载，取消之后不会再使用这个 callback 的回调结果
+     * @param callback 发起加载时传入的 callback
+     */
+    void cancel(Callback callback);
+}
@@ -0,0 +1,23 @@
+package com.zhanyage.htmlparselib.api;
+
+import android.text.Editable;
+
+import org.xml.sax.Attributes;
+
+/**
+ * 自定义标签的处理接口，例如聊天中的 &lt;mention&gt;、&lt;emoji&gt;，
+ * 通过 {@link com.zhanyage.htmlparselib.HtmlText#registerTagHandler(String, CustomTagHandler)} 注册。
+ * 只会收到内置标签以外的标签，解析可能在后台线程进行
+ */
+public interface CustomTagHandler {
+
+    /**
+     * 处理自定义标签
+     * @param opening true 为开始标签，false 为结束标签
+     * @param tag 标签名
+     * @param output 当前已经解析出来的文本，只能在末尾追加文字或者设置 span，
+     *               不能修改已有的文字，否则内置标签记录的开始位置会失效
+     * @param attributes 开始标签的属性，只在本次回调中有效；结束标签时为 null
+     */
+    void handleTag(boolean opening, String tag, Editable output, Attributes attributes);
+}
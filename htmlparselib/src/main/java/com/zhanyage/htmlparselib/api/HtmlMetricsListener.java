@@ -0,0 +1,24 @@
+package com.zhanyage.htmlparselib.api;
+
+import com.zhanyage.htmlparselib.HtmlRenderMetrics;
+
+/**
+ * 渲染耗时的统计接口，通过 {@link com.zhanyage.htmlparselib.HtmlText#setMetricsListener(HtmlMetricsListener)} 设置。
+ * 没有设置时不会计时，也不会产生额外的对象，可以在线上按比例采样
+ */
+public interface HtmlMetricsListener {
+
+    /**
+     * 一篇文档设置到 textView 之后回调，在主线程执行。渐进渲染时每一段分别回调
+     * @param metrics 各阶段的耗时和文档的统计，回调之后不会再被修改
+     */
+    void onRendered(HtmlRenderMetrics metrics);
+
+    /**
+     * 一张图片加载完成后回调，在主线程执行。命中图片缓存、被取消的图片不会回调
+     * @param url 图片的 url，视频首帧带有 VIDEO_IMG_TAG 前缀
+     * @param latencyMillis 从解析时获取 drawable 到 imageLoader 回调的耗时，包含懒加载等待的时间
+     * @param success 是否加载成功
+     */
+    void onImageLoaded(String url, long latencyMillis, boolean success);
+}
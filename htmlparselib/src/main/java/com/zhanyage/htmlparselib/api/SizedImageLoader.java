@@ -0,0 +1,27 @@
+package com.zhanyage.htmlparselib.api;
+
+/**
+ * 可以获取图片展示尺寸的 {@link HtmlImageLoader}。
+ * 实现该接口后，htmlparse 会调用带尺寸的加载方法代替 {@link #loadImage(String, Callback)} 和
+ * {@link #loadVideoImage(String, Callback)}，外部可以按照目标尺寸解码图片，避免加载原图
+ */
+public interface SizedImageLoader extends HtmlImageLoader {
+
+    /**
+     * 加载 html 中 img 标签中图片回调的方法
+     * @param url 图片的 url
+     * @param targetWidth 图片展示的宽度 px，img 标签没有写宽高时为最大宽度，0 表示不限制
+     * @param targetHeight 图片展示的高度 px，img 标签没有写宽高时为屏幕高度
+     * @param callback 加载完成的 callback
+     */
+    void loadImage(String url, int targetWidth, int targetHeight, Callback callback);
+
+    /**
+     * 加载 html 中的 video 标签中图片的回调方法
+     * @param url video 标签首帧图片的 url
+     * @param targetWidth 图片展示宽度的上限 px，0 表示不限制
+     * @param targetHeight 图片展示高度的上限 px
+     * @param callback 加载完成的 callback
+     */
+    void loadVideoImage(String url, int targetWidth, int targetHeight, Callback callback);
+}
@@ -0,0 +1,88 @@
+package com.zhanyage.htmlparselib;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class HtmlChunkerTest {
+
+    @Test
+    public void splitsAtBlockBoundaries() {
+        assertChunks(HtmlChunker.split("<p>a</p><div>b</div><ul><li>c</li></ul>d<br>e", 1, 1),
+                "<p>a</p>", "<div>b</div>", "<ul><li>c</li></ul>", "<ul></ul>d<br>", "e");
+    }
+
+    @Test
+    public void respectsMinimumLengths() {
+        String html = "<p>a</p><p>b</p><p>c</p>";
+        assertChunks(HtmlChunker.split(html, 100, 1), html);
+        // 第一段至少 16 个字符，之后每段至少 1 个字符
+        assertChunks(HtmlChunker.split(html, 16, 1), "<p>a</p><p>b</p>", "<p>c</p>");
+    }
+
+    @Test
+    public void doesNotSplitAtEnd() {
+        assertChunks(HtmlChunker.split("<p>a</p>", 1, 1), "<p>a</p>");
+        assertChunks(HtmlChunker.split("", 1, 1), "");
+    }
+
+    @Test
+    public void reopensUnclosedStyles() {
+        assertChunks(HtmlChunker.split("<b><font color=\"red\">a<br>b</font></b>", 1, 1),
+                "<b><font color=\"red\">a<br></font></b>",
+                "<b><font color=\"red\">b</font></b>");
+    }
+
+    @Test
+    public void orderedListContinuesNumbering() {
+        assertChunks(HtmlChunker.split("<ol start=\"3\"><li>a</li><li>b</li></ol>", 1, 1),
+                "<ol start=\"3\"><li>a</li></ol>",
+                "<ol start=\"4\"><li>b</li></ol>",
+                "<ol start=\"5\"></ol>");
+        assertChunks(HtmlChunker.split("<ol><li>a</li><li>b</li></ol>x", 1, 1),
+                "<ol><li>a</li></ol>",
+                "<ol start=\"2\"><li>b</li></ol>",
+                "<ol start=\"3\"></ol>x");
+    }
+
+    @Test
+    public void readsListStart() {
+        assertEquals(7, HtmlChunker.getStart("<ol start='7'>"));
+        assertEquals(12, HtmlChunker.getStart("<OL type=\"a\" START = \"12\">"));
+        assertEquals(1, HtmlChunker.getStart("<ol data-start=\"5\">"));
+        assertEquals(1, HtmlChunker.getStart("<ol start=\"x\">"));
+        assertEquals(1, HtmlChunker.getStart("<ol>"));
+    }
+
+    @Test
+    public void refusesToSplitInsideParagraphListItemLinkAndCenter() {
+        assertChunks(HtmlChunker.split("<p>a<br>b</p>", 1, 1), "<p>a<br>b</p>");
+        assertChunks(HtmlChunker.split("<a href=\"x\">a<br>b</a>", 1, 1), "<a href=\"x\">a<br>b</a>");
+        // center 结束时总是换行，补上的 </center> 会多出空行
+        assertChunks(HtmlChunker.split("<center>x<br>y</center>", 1, 1), "<center>x<br>y</center>");
+        assertChunks(HtmlChunker.split("<center><p>x</p><p>y</p></center>", 1, 1),
+                "<center><p>x</p><p>y</p></center>");
+        // li 中间的 br 不切分，li 结束后可以切分
+        assertChunks(HtmlChunker.split("<ul><li>a<br>b</li></ul>", 1, 1), "<ul><li>a<br>b</li></ul>", "<ul></ul>");
+    }
+
+    @Test
+    public void unclosedParagraphClosedByNextParagraph() {
+        // 第二个 <p> 结束了第一个，</div> 时没有还没结束的 p
+        assertChunks(HtmlChunker.split("<div><p>a<p>b</div>c", 1, 1), "<div><p>a<p>b</div>", "c");
+    }
+
+    @Test
+    public void ignoresTagsInCommentsAndAttributes() {
+        assertChunks(HtmlChunker.split("<!-- <br> -->a<br>b", 1, 1), "<!-- <br> -->a<br>", "b");
+        assertChunks(HtmlChunker.split("<span title=\"<br>\">a<br>b</span>", 1, 1),
+                "<span title=\"<br>\">a<br></span>", "<span title=\"<br>\">b</span>");
+    }
+
+    private static void assertChunks(List<String> actual, String... expected) {
+        assertEquals(Arrays.asList(expected), actual);
+    }
+}
@@ -0,0 +1,138 @@
+package com.zhanyage.htmlparselib;
+
+import android.text.Editable;
+import android.widget.TextView;
+
+import com.zhanyage.htmlparselib.api.CustomTagHandler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.xml.sax.Attributes;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 各阶段的 trace 区间必须嵌套并且配对，解析出错时也不能留下没有结束的区间
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28)
+public class HtmlTraceTest {
+    private static final String HTML = "<p>a <b>b</b> <a href=\"http://example.com\">c</a></p><ul><li>d</li></ul>";
+
+    private RecordingTracer tracer;
+    private TextView textView;
+
+    @Before
+    public void setUp() {
+        tracer = new RecordingTracer();
+        HtmlTrace.setTracer(tracer);
+        textView = new TextView(RuntimeEnvironment.getApplication());
+    }
+
+    @After
+    public void tearDown() {
+        HtmlTrace.setTracer(null);
+    }
+
+    @Test
+    public void coreParserSectionsBalance() {
+        HtmlText.from(HTML).into(textView);
+
+        tracer.assertBalanced();
+        assertEquals("begin HtmlText.into", tracer.events.get(0));
+        assertEquals("end HtmlText.into", tracer.events.get(tracer.events.size() - 1));
+        tracer.assertNested("HtmlText.parse [" + HTML.length() + "]", "HtmlText.fromHtml");
+        tracer.assertNested("HtmlText.parse [" + HTML.length() + "]", "HtmlText.linkSpans");
+        tracer.assertNested("HtmlText.into", "HtmlText.setText");
+    }
+
+    @Test
+    public void tagSoupSectionsBalance() {
+        HtmlText.from(HTML)
+                .registerTagHandler("x", new CustomTagHandler() {
+                    @Override
+                    public void handleTag(boolean opening, String tag, Editable output, Attributes attributes) {
+                    }
+                })
+                .into(textView);
+
+        tracer.assertBalanced();
+        tracer.assertNested("HtmlText.parse [" + HTML.length() + "]", "HtmlText.overrideTags");
+        tracer.assertNested("HtmlText.parse [" + HTML.length() + "]", "HtmlText.fromHtml");
+    }
+
+    @Test
+    public void compiledSectionsBalance() {
+        HtmlText.fromCompiled(com.zhanyage.htmlparsecore.CompiledDocument.compile(HTML)).into(textView);
+
+        tracer.assertBalanced();
+        tracer.assertNested("HtmlText.into", "HtmlText.fromCompiled");
+    }
+
+    @Test
+    public void corruptCompiledDocumentLeavesNoOpenSection() {
+        byte[] data = com.zhanyage.htmlparsecore.CompiledDocument.compile(HTML);
+        data[0] = 0;
+        try {
+            HtmlText.fromCompiled(data).into(textView);
+            fail("corrupt data was decoded");
+        } catch (IllegalArgumentException expected) {
+            // 预期的异常
+        }
+
+        tracer.assertBalanced();
+        assertTrue(tracer.events.contains("end HtmlText.fromCompiled"));
+    }
+
+    /**
+     * 记录区间的开始和结束，按栈的方式配对
+     */
+    private static final class RecordingTracer implements HtmlTrace.Tracer {
+        final List<String> events = new ArrayList<>();
+        final List<String> open = new ArrayList<>();
+        int unmatchedEnds;
+
+        @Override
+        public void beginSection(String name) {
+            events.add("begin " + name);
+            open.add(name);
+        }
+
+        @Override
+        public void endSection() {
+            if (open.isEmpty()) {
+                unmatchedEnds++;
+                return;
+            }
+            events.add("end " + open.remove(open.size() - 1));
+        }
+
+        void assertBalanced() {
+            assertTrue("open sections " + open, open.isEmpty());
+            assertEquals(0, unmatchedEnds);
+            assertTrue(events.size() > 0);
+        }
+
+        /**
+         * inner 区间在 outer 区间之内开始和结束
+         */
+        void assertNested(String outer, String inner) {
+            int outerBegin = events.indexOf("begin " + outer);
+            int outerEnd = events.indexOf("end " + outer);
+            int innerBegin = events.indexOf("begin " + inner);
+            int innerEnd = events.indexOf("end " + inner);
+            assertTrue(events.toString(), outerBegin >= 0 && innerBegin > outerBegin);
+            assertTrue(events.toString(), innerEnd > innerBegin && innerEnd < outerEnd);
+        }
+    }
+}